@@ -0,0 +1,285 @@
+package com.fizzed.maven.hooks;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates an AppCDS (application class data sharing) archive for the
+ * project's classpath to speed up the startup of the JVM.
+ *
+ * The main class is run once with the training arguments to find out which
+ * classes are loaded (the class list), then the archive is dumped. With
+ * "dynamic" enabled a dynamic archive is created in a single run instead
+ * (requires Java 13+). The archive is only regenerated if the classpath
+ * entries (or their fingerprints), the java executable or the configuration
+ * changed. Launch your app with "-XX:SharedArchiveFile=target/classpath.jsa",
+ * the exact same classpath and the same GC/heap flags as the jvmArgs to use it.
+ *
+ * All classpath entries must be jars (the JVM does not archive classes loaded
+ * from directories), so usually this runs after the "package" phase.
+ */
+@Mojo(
+    name = "cds",
+    defaultPhase = LifecyclePhase.PACKAGE,
+    requiresDependencyResolution = ResolutionScope.TEST,
+    threadSafe = true
+)
+public class CdsMojo extends AbstractMojo {
+
+    /**
+     * The Maven project instance. This is injected by Maven.
+     */
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    /**
+     * The current build session. This is injected by Maven.
+     */
+    @Parameter(defaultValue = "${session}", readonly = true, required = true)
+    private MavenSession session;
+
+    /**
+     * A list of all projects in the current reactor build.
+     */
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * The scope of the classpath to archive.
+     * Valid values are "compile", "runtime", or "test".
+     */
+    @Parameter(property = "classpath.scope", defaultValue = "runtime")
+    private String scope;
+
+    /**
+     * The main class to run to train the archive (required unless skipped).
+     */
+    @Parameter(property = "cds.mainClass")
+    private String mainClass;
+
+    /**
+     * Arguments passed to the main class for the training run. The app must
+     * exit on its own once it has loaded the classes it needs at startup.
+     */
+    @Parameter
+    private List<String> trainingArgs;
+
+    /**
+     * Extra JVM arguments for the training run and the archive dump (e.g.
+     * system properties). The JVM only uses an archive if the flags it was
+     * dumped with match the launch flags (GC, heap size large enough to turn
+     * off compressed oops, -XX:-UseCompressedOops, ...), so include the same
+     * GC and heap flags you launch your app with.
+     */
+    @Parameter
+    private List<String> jvmArgs;
+
+    /**
+     * The java executable to train and dump the archive with. Must be the same
+     * JVM that will later use the archive.
+     */
+    @Parameter(property = "cds.java", defaultValue = "${java.home}/bin/java")
+    private File javaExecutable;
+
+    /**
+     * Create a dynamic archive (-XX:ArchiveClassesAtExit, Java 13+) instead of
+     * a class list + static archive.
+     */
+    @Parameter(property = "cds.dynamic", defaultValue = "false")
+    private boolean dynamic;
+
+    /**
+     * The class list dumped by the training run (static archives only).
+     */
+    @Parameter(property = "cds.classListFile", defaultValue = "${project.build.directory}/classpath.classlist")
+    private File classListFile;
+
+    /**
+     * The archive file to create.
+     */
+    @Parameter(property = "cds.archiveFile", defaultValue = "${project.build.directory}/classpath.jsa")
+    private File archiveFile;
+
+    /**
+     * Max number of seconds to wait for each java process.
+     */
+    @Parameter(property = "cds.timeout", defaultValue = "300")
+    private int timeout;
+
+    /**
+     * Skip generating the archive.
+     */
+    @Parameter(property = "cds.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skipping CDS archive (cds.skip is true)");
+            return;
+        }
+
+        if (mainClass == null || mainClass.trim().isEmpty()) {
+            throw new MojoFailureException("Parameter mainClass is required to train the CDS archive");
+        }
+
+        List<String> classpath = ReactorClasspaths.of(session, reactorProjects).getClasspath(project, scope, getLog());
+
+        File stateFile = new File(archiveFile.getPath() + ".state");
+        String state;
+        try {
+            List<EntryFingerprint> fingerprints = EntryFingerprint.statAll(classpath);
+
+            for (EntryFingerprint fingerprint : fingerprints) {
+                if (fingerprint.isDirectory() && fingerprint.getFileCount() > 0) {
+                    getLog().warn("Skipping CDS archive: classpath entry " + fingerprint.getEntry() + " is a directory"
+                        + " (classes from directories cannot be archived, run after the 'package' phase)");
+                    return;
+                }
+            }
+
+            state = buildState(fingerprints);
+
+            if (archiveFile.isFile() && stateFile.isFile()
+                    && state.equals(new String(Files.readAllBytes(stateFile.toPath()), StandardCharsets.UTF_8))) {
+                getLog().info("CDS archive is up-to-date: " + archiveFile);
+                return;
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to fingerprint classpath", e);
+        }
+
+        String cp = String.join(File.pathSeparator, classpath);
+        File tempArchiveFile = new File(archiveFile.getPath() + ".tmp");
+
+        try {
+            Files.createDirectories(archiveFile.getAbsoluteFile().getParentFile().toPath());
+            Files.deleteIfExists(tempArchiveFile.toPath());
+            // never leave an archive around that does not match the classpath (e.g. if training fails)
+            Files.deleteIfExists(stateFile.toPath());
+            Files.deleteIfExists(archiveFile.toPath());
+
+            if (dynamic) {
+                getLog().info("Training dynamic CDS archive with main class " + mainClass);
+                List<String> command = trainingCommand(cp);
+                command.add(1, "-XX:ArchiveClassesAtExit=" + tempArchiveFile.getAbsolutePath());
+                run(command);
+            } else {
+                getLog().info("Training CDS class list with main class " + mainClass);
+                List<String> command = trainingCommand(cp);
+                command.add(1, "-Xshare:off");
+                command.add(2, "-XX:DumpLoadedClassList=" + classListFile.getAbsolutePath());
+                run(command);
+
+                getLog().info("Dumping CDS archive from class list " + classListFile);
+                List<String> dumpCommand = new ArrayList<>();
+                dumpCommand.add(javaExecutable.getAbsolutePath());
+                if (jvmArgs != null) {
+                    dumpCommand.addAll(jvmArgs);
+                }
+                dumpCommand.add("-Xshare:dump");
+                dumpCommand.add("-XX:SharedClassListFile=" + classListFile.getAbsolutePath());
+                dumpCommand.add("-XX:SharedArchiveFile=" + tempArchiveFile.getAbsolutePath());
+                dumpCommand.add("-cp");
+                dumpCommand.add(cp);
+                run(dumpCommand);
+            }
+
+            if (!tempArchiveFile.isFile()) {
+                throw new MojoExecutionException("The JVM did not create the CDS archive " + tempArchiveFile);
+            }
+
+            Files.move(tempArchiveFile.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.write(stateFile.toPath(), state.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to create CDS archive", e);
+        }
+
+        getLog().info("CDS archive saved to: " + archiveFile.getAbsolutePath());
+    }
+
+    private String buildState(List<EntryFingerprint> fingerprints) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("java\t").append(EntryFingerprint.stat(javaExecutable.getAbsolutePath())).append("\n");
+        sb.append("dynamic\t").append(dynamic).append("\n");
+        sb.append("mainClass\t").append(mainClass).append("\n");
+        sb.append("jvmArgs\t").append(jvmArgs != null ? String.join(" ", jvmArgs) : "").append("\n");
+        sb.append("trainingArgs\t").append(trainingArgs != null ? String.join(" ", trainingArgs) : "").append("\n");
+        for (EntryFingerprint fingerprint : fingerprints) {
+            sb.append("entry\t").append(fingerprint).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private List<String> trainingCommand(String cp) {
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable.getAbsolutePath());
+        if (jvmArgs != null) {
+            command.addAll(jvmArgs);
+        }
+        command.add("-cp");
+        command.add(cp);
+        command.add(mainClass);
+        if (trainingArgs != null) {
+            command.addAll(trainingArgs);
+        }
+        return command;
+    }
+
+    private void run(List<String> command) throws IOException, MojoExecutionException {
+        getLog().debug("Running: " + String.join(" ", command));
+
+        Process process = new ProcessBuilder(command)
+            .directory(project.getBasedir())
+            .redirectErrorStream(true)
+            .start();
+
+        // drain output in the background so the process never blocks on a full pipe
+        Thread drainer = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    getLog().info("[java] " + line);
+                }
+            } catch (IOException e) {
+                getLog().debug("Unable to read process output", e);
+            }
+        });
+        drainer.setDaemon(true);
+        drainer.start();
+
+        try {
+            if (!process.waitFor(timeout, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new MojoExecutionException("Java process did not exit within " + timeout + " seconds: " + String.join(" ", command));
+            }
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for java process", e);
+        }
+
+        if (process.exitValue() != 0) {
+            throw new MojoExecutionException("Java process failed with exit code " + process.exitValue() + ": " + String.join(" ", command));
+        }
+    }
+}
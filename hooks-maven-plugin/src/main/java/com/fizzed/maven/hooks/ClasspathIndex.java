@@ -0,0 +1,209 @@
+package com.fizzed.maven.hooks;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An index of which classpath entries supply each package and class.
+ *
+ * Binary format (big endian, strings are java "modified UTF-8" as written by
+ * DataOutputStream.writeUTF, counts and entry indexes are unsigned LEB128
+ * varints):
+ *
+ * <pre>
+ * int     magic "CPIX"
+ * short   version (1)
+ * varint  entry count, then per entry (in classpath order):
+ *   utf     fingerprint line (type, size, mtime, files, hash, path)
+ * varint  package count, then per package (sorted by name):
+ *   utf     package name ("" for the default package, "." separated)
+ *   varint  provider count, then the entry indexes (in classpath order)
+ *   varint  class count, then per class (sorted by name):
+ *     utf     simple class name (nested classes keep their "$")
+ *     varint  provider count, then the entry indexes (first one wins)
+ * </pre>
+ */
+class ClasspathIndex {
+
+    static private final int MAGIC = 0x43504958;
+    static private final int VERSION = 1;
+
+    private final List<EntryFingerprint> entries;
+    private final List<List<String>> entryClasses;
+    // package -> simple class name -> entry indexes
+    private final Map<String, Map<String, List<Integer>>> packages;
+
+    /**
+     * @param entries      The fingerprints of the classpath entries (in order).
+     * @param entryClasses The class names ("." separated) supplied by each entry.
+     */
+    ClasspathIndex(List<EntryFingerprint> entries, List<List<String>> entryClasses) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.entryClasses = Collections.unmodifiableList(entryClasses);
+        this.packages = new TreeMap<>();
+
+        for (int i = 0; i < entryClasses.size(); i++) {
+            for (String className : entryClasses.get(i)) {
+                int dot = className.lastIndexOf('.');
+                String packageName = dot < 0 ? "" : className.substring(0, dot);
+                String simpleName = className.substring(dot + 1);
+                List<Integer> providers = this.packages
+                    .computeIfAbsent(packageName, k -> new TreeMap<>())
+                    .computeIfAbsent(simpleName, k -> new ArrayList<>(1));
+                // an entry could (in theory) list the same class twice
+                if (providers.isEmpty() || providers.get(providers.size()-1) != i) {
+                    providers.add(i);
+                }
+            }
+        }
+    }
+
+    public List<EntryFingerprint> getEntries() {
+        return entries;
+    }
+
+    public List<String> getEntryClasses(int index) {
+        return entryClasses.get(index);
+    }
+
+    public Map<String, Map<String, List<Integer>>> getPackages() {
+        return packages;
+    }
+
+    /**
+     * Entry indexes (in classpath order) supplying classes of the package.
+     */
+    public List<Integer> getPackageProviders(String packageName) {
+        Map<String, List<Integer>> classes = this.packages.get(packageName);
+        if (classes == null) {
+            return Collections.emptyList();
+        }
+        List<Integer> providers = new ArrayList<>();
+        for (List<Integer> classProviders : classes.values()) {
+            for (Integer provider : classProviders) {
+                if (!providers.contains(provider)) {
+                    providers.add(provider);
+                }
+            }
+        }
+        Collections.sort(providers);
+        return providers;
+    }
+
+    public byte[] toBytes() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+
+        writeVarInt(out, entries.size());
+        for (EntryFingerprint entry : entries) {
+            out.writeUTF(entry.toLine());
+        }
+
+        writeVarInt(out, packages.size());
+        for (Map.Entry<String, Map<String, List<Integer>>> pkg : packages.entrySet()) {
+            out.writeUTF(pkg.getKey());
+            writeIndexes(out, getPackageProviders(pkg.getKey()));
+            writeVarInt(out, pkg.getValue().size());
+            for (Map.Entry<String, List<Integer>> cls : pkg.getValue().entrySet()) {
+                out.writeUTF(cls.getKey());
+                writeIndexes(out, cls.getValue());
+            }
+        }
+
+        out.flush();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Reads an index or returns null if it does not exist or is not readable
+     * (e.g. written by an incompatible version).
+     */
+    static public ClasspathIndex read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (InputStream input = Files.newInputStream(file)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                return null;
+            }
+
+            int entryCount = readVarInt(in);
+            List<EntryFingerprint> entries = new ArrayList<>(entryCount);
+            List<List<String>> entryClasses = new ArrayList<>(entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                entries.add(EntryFingerprint.parseLine(in.readUTF()));
+                entryClasses.add(new ArrayList<>());
+            }
+
+            int packageCount = readVarInt(in);
+            for (int i = 0; i < packageCount; i++) {
+                String packageName = in.readUTF();
+                readIndexes(in);
+                int classCount = readVarInt(in);
+                for (int j = 0; j < classCount; j++) {
+                    String simpleName = in.readUTF();
+                    String className = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+                    for (int index : readIndexes(in)) {
+                        entryClasses.get(index).add(className);
+                    }
+                }
+            }
+
+            return new ClasspathIndex(entries, entryClasses);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    static private void writeIndexes(DataOutputStream out, List<Integer> indexes) throws IOException {
+        writeVarInt(out, indexes.size());
+        for (int index : indexes) {
+            writeVarInt(out, index);
+        }
+    }
+
+    static private int[] readIndexes(DataInputStream in) throws IOException {
+        int[] indexes = new int[readVarInt(in)];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = readVarInt(in);
+        }
+        return indexes;
+    }
+
+    static private void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static private int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.fizzed.maven.hooks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * The fingerprints of every entry of a classpath (in classpath order) and
+ * the differences to the manifest of a previous build.
+ */
+class ClasspathManifest {
+
+    static private final String HEADER = "# classpath manifest v1 (type, size, mtime, files, sha256, path)";
+
+    private final List<EntryFingerprint> fingerprints;
+
+    ClasspathManifest(List<EntryFingerprint> fingerprints) {
+        this.fingerprints = Collections.unmodifiableList(fingerprints);
+    }
+
+    public List<EntryFingerprint> getFingerprints() {
+        return fingerprints;
+    }
+
+    /**
+     * Fingerprints every entry, hashing their content in parallel. Hashes
+     * from the previous manifest are reused for entries whose size and mtime
+     * did not change, so unchanged entries are never read again.
+     *
+     * @param classpath The classpath entries.
+     * @param previous  The manifest of the previous build (or null).
+     * @param threads   The number of threads to hash with.
+     */
+    static public ClasspathManifest compute(List<String> classpath, ClasspathManifest previous, int threads) throws IOException {
+        Map<String, EntryFingerprint> previousByEntry = new LinkedHashMap<>();
+        if (previous != null) {
+            for (EntryFingerprint fingerprint : previous.fingerprints) {
+                previousByEntry.put(fingerprint.getEntry(), fingerprint);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            List<EntryFingerprint> fingerprints = pool.submit(() -> classpath.parallelStream()
+                .map(entry -> {
+                    try {
+                        EntryFingerprint fingerprint = EntryFingerprint.stat(entry);
+                        EntryFingerprint last = previousByEntry.get(entry);
+                        if (last != null && last.getHash() != null && fingerprint.isSameStat(last)) {
+                            return last;
+                        }
+                        return fingerprint.withHash(fingerprint.computeHash());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .collect(Collectors.toList())).get();
+            return new ClasspathManifest(fingerprints);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException)e.getCause()).getCause();
+            }
+            throw new IOException("Unable to fingerprint classpath", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fingerprinting classpath", e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Reads a manifest or returns null if it does not exist or is not readable
+     * (e.g. written by an incompatible version).
+     */
+    static public ClasspathManifest read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !HEADER.equals(lines.get(0))) {
+                return null;
+            }
+            List<EntryFingerprint> fingerprints = new ArrayList<>();
+            for (String line : lines.subList(1, lines.size())) {
+                if (!line.isEmpty()) {
+                    fingerprints.add(EntryFingerprint.parseLine(line));
+                }
+            }
+            return new ClasspathManifest(fingerprints);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public byte[] toBytes() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(HEADER).append("\n");
+        for (EntryFingerprint fingerprint : fingerprints) {
+            sb.append(fingerprint.toLine()).append("\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The differences to a previous manifest, one entry per line prefixed
+     * with "+" (added), "-" (removed) or "~" (content changed). Every entry is
+     * "added" if there is no previous manifest.
+     */
+    public List<String> diff(ClasspathManifest previous) {
+        Map<String, EntryFingerprint> previousByEntry = new LinkedHashMap<>();
+        if (previous != null) {
+            for (EntryFingerprint fingerprint : previous.fingerprints) {
+                previousByEntry.put(fingerprint.getEntry(), fingerprint);
+            }
+        }
+
+        List<String> changes = new ArrayList<>();
+        for (EntryFingerprint fingerprint : fingerprints) {
+            EntryFingerprint last = previousByEntry.remove(fingerprint.getEntry());
+            if (last == null) {
+                changes.add("+\t" + fingerprint.getEntry());
+            } else if (fingerprint.isExists() != last.isExists()
+                    || fingerprint.isDirectory() != last.isDirectory()
+                    || !String.valueOf(fingerprint.getHash()).equals(String.valueOf(last.getHash()))) {
+                // only the content matters (e.g. a rebuilt jar w/ the same classes is not a change)
+                changes.add("~\t" + fingerprint.getEntry());
+            }
+        }
+        for (String removed : previousByEntry.keySet()) {
+            changes.add("-\t" + removed);
+        }
+        return changes;
+    }
+
+}
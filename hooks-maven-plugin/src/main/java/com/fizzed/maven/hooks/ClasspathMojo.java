@@ -1,5 +1,6 @@
 package com.fizzed.maven.hooks;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -8,18 +9,11 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
-import org.apache.maven.artifact.DependencyResolutionRequiredException;
-import org.apache.maven.artifact.Artifact;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
 
 /**
  * Saves the project's classpath to a file.
@@ -28,6 +22,16 @@ import java.util.LinkedHashSet;
  * and saves the resulting classpath string to a specified file.
  * It intelligently adds the .jar file if the 'package' phase has run,
  * otherwise it falls back to the 'target/classes' directory.
+ *
+ * Output files are only rewritten if their content changed (keeping their
+ * mtime), so watchers and launchers only react to real changes. Optionally
+ * a manifest with the fingerprint (size, mtime and content hash) of every
+ * entry and a diff of the entries that were added, removed or changed since
+ * the previous run are written alongside the classpath.
+ *
+ * The classpath can also be written in formats a launcher can pass straight
+ * to the JVM: a "java @argfile", a manifest-only "pathing" jar and an
+ * argfile that puts modules (and what they require) on the module path.
  */
 @Mojo(
     name = "classpath",
@@ -43,6 +47,12 @@ public class ClasspathMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project}", readonly = true, required = true)
     private MavenProject project;
 
+    /**
+     * The current build session. This is injected by Maven.
+     */
+    @Parameter(defaultValue = "${session}", readonly = true, required = true)
+    private MavenSession session;
+
     /**
      * A list of all projects in the current reactor build.
      */
@@ -63,155 +73,150 @@ public class ClasspathMojo extends AbstractMojo {
     @Parameter(property = "classpath.outputFile", defaultValue = "${project.build.directory}/classpath.txt")
     private File outputFile;
 
-    @Override
-    public void execute() throws MojoExecutionException, MojoFailureException {
-        getLog().info("Saving classpath for scope: " + scope);
+    /**
+     * Write a manifest with the fingerprint of each classpath entry (and the
+     * diff to the previous run).
+     */
+    @Parameter(property = "classpath.manifest", defaultValue = "false")
+    private boolean manifest;
 
-        // Use LinkedHashSet to preserve order and avoid duplicates
-        // We will build two separate lists and combine them
-        Set<String> reactorPaths = new LinkedHashSet<>();
-        Set<String> dependencyPaths = new LinkedHashSet<>();
+    /**
+     * The path to the file where the fingerprints of the entries will be saved.
+     */
+    @Parameter(property = "classpath.manifestFile", defaultValue = "${project.build.directory}/classpath.manifest")
+    private File manifestFile;
 
-        List<String> baseClasspathElements;
-        try {
-            // Select the correct base classpath list from Maven
-            switch (scope.toLowerCase()) {
-                case "compile":
-                    baseClasspathElements = project.getCompileClasspathElements();
-                    // Add current project's output
-                    addProjectOutputToClasspath(project, reactorPaths, false);
-                    break;
-                case "test":
-                    baseClasspathElements = project.getTestClasspathElements();
-                    // Add current project's test/main output directories FIRST
-                    addProjectOutputToClasspath(project, reactorPaths, true);
-                    break;
-                case "runtime":
-                    baseClasspathElements = project.getRuntimeClasspathElements();
-                    // Add current project's output
-                    addProjectOutputToClasspath(project, reactorPaths, false);
-                    break;
-                default:
-                    throw new MojoExecutionException("Invalid scope: " + scope + ". Must be one of 'compile', 'runtime', or 'test'.");
-            }
-            // Add all other elements to the dependency list
-            dependencyPaths.addAll(baseClasspathElements);
+    /**
+     * The path to the file where the entries that were added ("+"), removed
+     * ("-") or changed ("~") since the previous run will be saved.
+     */
+    @Parameter(property = "classpath.diffFile", defaultValue = "${project.build.directory}/classpath.diff")
+    private File diffFile;
 
-        } catch (DependencyResolutionRequiredException e) {
-            throw new MojoExecutionException("Dependency resolution failed", e);
-        }
+    /**
+     * Number of threads used to hash the classpath entries (0 for the number
+     * of available processors).
+     */
+    @Parameter(property = "classpath.hashThreads", defaultValue = "0")
+    private int hashThreads;
 
-        // --- FIX for classpath duplication ---
-        // The baseClasspathElements (e.g., from getRuntimeClasspathElements)
-        // often contains the target/classes directory for the *current* project.
-        // We must remove it here to prevent duplication, since
-        // addProjectOutputToClasspath() adds the correct JAR or classes path.
-        dependencyPaths.remove(project.getBuild().getOutputDirectory());
-        dependencyPaths.remove(project.getBuild().getTestOutputDirectory());
-        // --- END FIX ---
-
-        // --- FIX for multi-module reactor builds ---
-        // Manually find all reactor dependencies and add their output paths
-        // to the high-priority 'reactorPaths' list.
-
-        // Create a quick-lookup map of projects in the reactor
-        Set<String> reactorGAVs = reactorProjects.stream()
-            .map(p -> p.getGroupId() + ":" + p.getArtifactId() + ":" + p.getVersion())
-            .collect(Collectors.toSet());
-
-        // Get all dependency artifacts for the current project
-        Set<Artifact> dependencies = project.getArtifacts();
-
-        for (Artifact dep : dependencies) {
-            String gav = dep.getGroupId() + ":" + dep.getArtifactId() + ":" + dep.getVersion();
-
-            // Check if this dependency is one of the modules in this build
-            if (reactorGAVs.contains(gav)) {
-                // Find the corresponding MavenProject object
-                for (MavenProject reactorProject : reactorProjects) {
-                    if (reactorProject.getGroupId().equals(dep.getGroupId()) &&
-                        reactorProject.getArtifactId().equals(dep.getArtifactId()) &&
-                        reactorProject.getVersion().equals(dep.getVersion())) {
-
-                        getLog().debug("Found reactor dependency: " + gav);
-
-                        // Check if this is a test dependency
-                        boolean isTestDependency = "test".equalsIgnoreCase(dep.getScope()) || "test".equalsIgnoreCase(scope);
-
-                        // Add the reactor project's output (JAR or classes) to reactorPaths
-                        addProjectOutputToClasspath(reactorProject, reactorPaths, isTestDependency);
-
-                        // Remove from dependencyPaths to avoid duplication
-                        dependencyPaths.remove(reactorProject.getBuild().getOutputDirectory());
-                        dependencyPaths.remove(reactorProject.getBuild().getTestOutputDirectory());
-                        if (reactorProject.getArtifact().getFile() != null) {
-                            dependencyPaths.remove(reactorProject.getArtifact().getFile().getAbsolutePath());
-                        }
-
-                        break;
-                    }
-                }
-            }
-        }
-        // --- END FIX ---
+    /**
+     * Write a "java @argfile" with the classpath (Java 9+).
+     */
+    @Parameter(property = "classpath.argFile", defaultValue = "false")
+    private boolean argFile;
+
+    /**
+     * The path to the @argfile, e.g. `java @target/classpath.args com.example.Main`
+     */
+    @Parameter(property = "classpath.argFileOutput", defaultValue = "${project.build.directory}/classpath.args")
+    private File argFileOutput;
+
+    /**
+     * Write a manifest-only jar with a Class-Path attribute listing the
+     * entries (relative to the jar).
+     */
+    @Parameter(property = "classpath.pathingJar", defaultValue = "false")
+    private boolean pathingJar;
 
-        // Now, combine the two lists: reactor paths first, then all other dependencies.
-        // There are still possible duplicates, we'll remove them now
-        Set<String> finalClasspath = new LinkedHashSet<>();
-        finalClasspath.addAll(reactorPaths);
-        finalClasspath.addAll(dependencyPaths);
+    /**
+     * The path to the pathing jar, e.g. `java -cp target/classpath.jar com.example.Main`
+     */
+    @Parameter(property = "classpath.pathingJarFile", defaultValue = "${project.build.directory}/classpath.jar")
+    private File pathingJarFile;
 
-        // Remove any empty entries
-        finalClasspath.removeIf(String::isEmpty);
+    /**
+     * Write a "java @argfile" with modular jars and the modules they require
+     * (also automatic ones) on the module path and everything else on the
+     * classpath (Java 9+).
+     */
+    @Parameter(property = "classpath.moduleArgFile", defaultValue = "false")
+    private boolean moduleArgFile;
+
+    /**
+     * The path to the module path @argfile.
+     */
+    @Parameter(property = "classpath.moduleArgFileOutput", defaultValue = "${project.build.directory}/modulepath.args")
+    private File moduleArgFileOutput;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        getLog().info("Saving classpath for scope: " + scope);
+
+        // The reactor index & computed classpaths are shared by all modules in this build
+        ReactorClasspaths reactorClasspaths = ReactorClasspaths.of(session, reactorProjects);
+
+        List<String> finalClasspath = reactorClasspaths.getClasspath(project, scope, getLog());
 
         // Create the classpath string, joined by the system path separator (e.g., ":" on Linux, ";" on Windows)
         String classpath = String.join("\n", finalClasspath);
         classpath += "\n";
 
-        // Ensure the parent directory exists
+        // Write the classpath string to the output file (only if it changed)
         try {
-            File parentDir = outputFile.getParentFile();
-            if (!parentDir.exists()) {
-                parentDir.mkdirs();
+            if (OutputFiles.writeIfChanged(outputFile, classpath.getBytes(StandardCharsets.UTF_8))) {
+                getLog().info("Classpath saved to: " + outputFile.getAbsolutePath());
+            } else {
+                getLog().info("Classpath unchanged: " + outputFile.getAbsolutePath());
             }
-        } catch (Exception e) {
-            throw new MojoExecutionException("Could not create parent directory: " + outputFile.getParent(), e);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write classpath file", e);
+        }
+
+        if (manifest) {
+            writeManifest(finalClasspath);
         }
 
-        // Write the classpath string to the output file
         try {
-            Files.write(outputFile.toPath(), classpath.getBytes(StandardCharsets.UTF_8));
+            if (argFile) {
+                writeLauncherFile("Classpath argfile", argFileOutput, LauncherFiles.argFile(finalClasspath));
+            }
+            if (pathingJar) {
+                writeLauncherFile("Classpath pathing jar", pathingJarFile, LauncherFiles.pathingJar(finalClasspath, pathingJarFile));
+            }
+            if (moduleArgFile) {
+                writeLauncherFile("Module path argfile", moduleArgFileOutput, LauncherFiles.moduleArgFile(finalClasspath, getLog()));
+            }
         } catch (IOException e) {
-            throw new MojoExecutionException("Failed to write classpath file", e);
+            throw new MojoExecutionException("Failed to write classpath launcher files", e);
         }
-
-        getLog().info("Classpath saved to: " + outputFile.getAbsolutePath());
     }
 
-    /**
-     * Helper method to add the correct output (JAR or classes directory) to the classpath.
-     *
-     * @param proj         The project to get output from.
-     * @param pathSet      The set of paths to add to.
-     * @param isTestScope  Whether the test-classes directory should also be added.
-     */
-    private void addProjectOutputToClasspath(MavenProject proj, Set<String> pathSet, boolean isTestScope) {
-        // Test output directory is always added first if in test scope
-        if (isTestScope) {
-            pathSet.add(proj.getBuild().getTestOutputDirectory());
+    private void writeLauncherFile(String description, File file, byte[] content) throws IOException {
+        if (OutputFiles.writeIfChanged(file, content)) {
+            getLog().info(description + " saved to: " + file.getAbsolutePath());
+        } else {
+            getLog().info(description + " unchanged: " + file.getAbsolutePath());
         }
+    }
 
-        // Check if the packaged artifact file (JAR) exists
-        File artifactFile = proj.getArtifact().getFile();
+    private void writeManifest(List<String> classpath) throws MojoExecutionException {
+        try {
+            ClasspathManifest previous = ClasspathManifest.read(manifestFile.toPath());
 
-        if (artifactFile != null && artifactFile.isFile()) {
-            // If JAR exists, add it
-            pathSet.add(artifactFile.getAbsolutePath());
-            getLog().debug("Added JAR path: " + artifactFile.getAbsolutePath());
-        } else {
-            // Otherwise, fall back to the classes directory
-            pathSet.add(proj.getBuild().getOutputDirectory());
-            getLog().debug("Added classes directory: " + proj.getBuild().getOutputDirectory());
+            int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+            ClasspathManifest current = ClasspathManifest.compute(classpath, previous, threads);
+
+            List<String> changes = current.diff(previous);
+
+            // nothing changed: leave both files (and their mtimes) alone so watchers only react to real changes
+            if (previous != null && changes.isEmpty()) {
+                getLog().info("Classpath manifest unchanged: " + manifestFile.getAbsolutePath());
+                return;
+            }
+
+            // always replaced (even if the same entries changed again), then the manifest
+            StringBuilder sb = new StringBuilder();
+            for (String change : changes) {
+                sb.append(change).append("\n");
+            }
+            OutputFiles.write(diffFile, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+            OutputFiles.write(manifestFile, current.toBytes());
+
+            getLog().info("Classpath manifest saved to: " + manifestFile.getAbsolutePath() + " (" + changes.size() + " changed entries)");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write classpath manifest", e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,258 @@
+package com.fizzed.maven.hooks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Fingerprint of a classpath entry (a jar or an output directory) used to
+ * detect if it changed between builds. For a jar its size and mtime, for a
+ * directory the number of files, their total size and the newest mtime.
+ * Optionally includes a content hash: the SHA-256 of a jar or a tree digest
+ * (the relative path and SHA-256 of every file) of a directory.
+ */
+class EntryFingerprint {
+
+    private final String entry;
+    private final boolean exists;
+    private final boolean directory;
+    private final long size;
+    private final long lastModified;
+    private final int fileCount;
+    private final String hash;
+
+    private EntryFingerprint(String entry, boolean exists, boolean directory, long size, long lastModified, int fileCount, String hash) {
+        this.entry = entry;
+        this.exists = exists;
+        this.directory = directory;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.fileCount = fileCount;
+        this.hash = hash;
+    }
+
+    public String getEntry() {
+        return entry;
+    }
+
+    public boolean isExists() {
+        return exists;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * The content hash or null if it was not computed.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public EntryFingerprint withHash(String hash) {
+        return new EntryFingerprint(entry, exists, directory, size, lastModified, fileCount, hash);
+    }
+
+    /**
+     * Whether the stat info (not the hash) of both fingerprints is identical.
+     */
+    public boolean isSameStat(EntryFingerprint other) {
+        return other != null
+            && this.entry.equals(other.entry)
+            && this.exists == other.exists
+            && this.directory == other.directory
+            && this.size == other.size
+            && this.lastModified == other.lastModified
+            && this.fileCount == other.fileCount;
+    }
+
+    /**
+     * Computes the content hash of the entry (null if it does not exist). Files of a directory are hashed
+     * in parallel (in the fork join pool of the caller if called from one).
+     */
+    public String computeHash() throws IOException {
+        if (!this.exists) {
+            return null;
+        }
+
+        Path path = Paths.get(this.entry);
+
+        if (!this.directory) {
+            return toHex(sha256(path));
+        }
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(path)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        List<String[]> hashed;
+        try {
+            hashed = files.parallelStream()
+                .map(file -> {
+                    try {
+                        // always use "/" so digests match across platforms
+                        return new String[] { path.relativize(file).toString().replace('\\', '/'), toHex(sha256(file)) };
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .sorted((a, b) -> a[0].compareTo(b[0]))
+                .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        MessageDigest digest = newDigest();
+        for (String[] file : hashed) {
+            digest.update(file[0].getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            digest.update(file[1].getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte)'\n');
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Fingerprints a classpath entry (only stats the file or the files of the
+     * directory, nothing is read).
+     */
+    static public EntryFingerprint stat(String entry) throws IOException {
+        Path path = Paths.get(entry);
+
+        if (Files.isRegularFile(path)) {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            return new EntryFingerprint(entry, true, false, attrs.size(), attrs.lastModifiedTime().toMillis(), 1, null);
+        }
+
+        if (Files.isDirectory(path)) {
+            long[] totals = new long[3];    // size, newest mtime, count
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile()) {
+                        totals[0] += attrs.size();
+                        totals[1] = Math.max(totals[1], attrs.lastModifiedTime().toMillis());
+                        totals[2]++;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return new EntryFingerprint(entry, true, true, totals[0], totals[1], (int)totals[2], null);
+        }
+
+        return new EntryFingerprint(entry, false, false, -1L, -1L, 0, null);
+    }
+
+    static public List<EntryFingerprint> statAll(List<String> entries) throws IOException {
+        List<EntryFingerprint> fingerprints = new ArrayList<>(entries.size());
+        for (String entry : entries) {
+            fingerprints.add(stat(entry));
+        }
+        return fingerprints;
+    }
+
+    /**
+     * A tab separated line (path last) including the hash, the inverse of
+     * parseLine().
+     */
+    public String toLine() {
+        return (this.exists ? (this.directory ? "dir" : "file") : "missing")
+            + "\t" + this.size + "\t" + this.lastModified + "\t" + this.fileCount
+            + "\t" + (this.hash != null ? this.hash : "-") + "\t" + this.entry;
+    }
+
+    static public EntryFingerprint parseLine(String line) {
+        String[] parts = line.split("\t", 6);
+        if (parts.length != 6) {
+            throw new IllegalArgumentException("Invalid fingerprint line: " + line);
+        }
+        return new EntryFingerprint(parts[5], !"missing".equals(parts[0]), "dir".equals(parts[0]),
+            Long.parseLong(parts[1]), Long.parseLong(parts[2]), Integer.parseInt(parts[3]),
+            "-".equals(parts[4]) ? null : parts[4]);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof EntryFingerprint)) {
+            return false;
+        }
+        EntryFingerprint other = (EntryFingerprint)o;
+        return isSameStat(other) && Objects.equals(this.hash, other.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(entry, size, lastModified, hash);
+    }
+
+    static private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static private byte[] sha256(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buf = new byte[65536];
+        try (InputStream input = Files.newInputStream(file)) {
+            int n;
+            while ((n = input.read(buf)) > 0) {
+                digest.update(buf, 0, n);
+            }
+        }
+        return digest.digest();
+    }
+
+    static private String toHex(byte[] bytes) {
+        char[] hex = "0123456789abcdef".toCharArray();
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i*2] = hex[(bytes[i] >> 4) & 0xF];
+            chars[i*2+1] = hex[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * A single line representation (used in state files to compare builds).
+     */
+    @Override
+    public String toString() {
+        if (!this.exists) {
+            return this.entry + "\tmissing";
+        }
+        return this.entry + "\t" + (this.directory ? "dir" : "file") + "\t" + this.size + "\t" + this.lastModified
+            + (this.directory ? "\t" + this.fileCount : "");
+    }
+
+}
@@ -0,0 +1,233 @@
+package com.fizzed.maven.hooks;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Saves an index of which classpath entry supplies each package and class.
+ *
+ * Jars are scanned by reading their zip central directory (memory mapped),
+ * directories by walking them, and all entries are scanned in parallel. The
+ * index is written in a compact binary format (see ClasspathIndex) that
+ * launchers can use to find classes without scanning every jar. Entries that
+ * did not change (same size and mtime) since the previous index are not
+ * scanned again. Duplicate classes and split packages (supplied by more than
+ * one entry) are reported to a text file.
+ */
+@Mojo(
+    name = "index",
+    defaultPhase = LifecyclePhase.COMPILE,
+    requiresDependencyResolution = ResolutionScope.TEST,
+    threadSafe = true
+)
+public class IndexMojo extends AbstractMojo {
+
+    /**
+     * The Maven project instance. This is injected by Maven.
+     */
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    /**
+     * The current build session. This is injected by Maven.
+     */
+    @Parameter(defaultValue = "${session}", readonly = true, required = true)
+    private MavenSession session;
+
+    /**
+     * A list of all projects in the current reactor build.
+     */
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * The scope of the classpath to index.
+     * Valid values are "compile", "runtime", or "test".
+     */
+    @Parameter(property = "classpath.scope", defaultValue = "runtime")
+    private String scope;
+
+    /**
+     * The path to the file where the binary index will be saved.
+     */
+    @Parameter(property = "classpath.indexFile", defaultValue = "${project.build.directory}/classpath.idx")
+    private File indexFile;
+
+    /**
+     * The path to the file where duplicate classes and split packages will be saved.
+     */
+    @Parameter(property = "classpath.conflictsFile", defaultValue = "${project.build.directory}/classpath-conflicts.txt")
+    private File conflictsFile;
+
+    /**
+     * Number of threads used to scan the classpath entries (0 for the number
+     * of available processors).
+     */
+    @Parameter(property = "classpath.indexThreads", defaultValue = "0")
+    private int indexThreads;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        List<String> classpath = ReactorClasspaths.of(session, reactorProjects).getClasspath(project, scope, getLog());
+
+        ClasspathIndex previous = ClasspathIndex.read(indexFile.toPath());
+        Map<String, Integer> previousIndexes = new HashMap<>();
+        if (previous != null) {
+            for (int i = 0; i < previous.getEntries().size(); i++) {
+                previousIndexes.put(previous.getEntries().get(i).getEntry(), i);
+            }
+        }
+
+        AtomicInteger scanned = new AtomicInteger();
+        List<EntryFingerprint> fingerprints = new ArrayList<>();
+        List<List<String>> entryClasses = new ArrayList<>();
+
+        int threads = indexThreads > 0 ? indexThreads : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ScannedEntry> results = pool.submit(() -> classpath.parallelStream()
+                .map(entry -> {
+                    try {
+                        EntryFingerprint fingerprint = EntryFingerprint.stat(entry);
+                        Integer previousIndex = previousIndexes.get(entry);
+                        if (previousIndex != null && fingerprint.isSameStat(previous.getEntries().get(previousIndex))) {
+                            return new ScannedEntry(fingerprint, previous.getEntryClasses(previousIndex));
+                        }
+                        scanned.incrementAndGet();
+                        return new ScannedEntry(fingerprint, scan(fingerprint));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(new IOException("Unable to index " + entry + ": " + e.getMessage(), e));
+                    }
+                })
+                .collect(Collectors.toList())).get();
+
+            for (ScannedEntry result : results) {
+                fingerprints.add(result.fingerprint);
+                entryClasses.add(result.classes);
+            }
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Failed to index classpath: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while indexing classpath", e);
+        } finally {
+            pool.shutdown();
+        }
+
+        ClasspathIndex index = new ClasspathIndex(fingerprints, entryClasses);
+
+        try {
+            if (OutputFiles.writeIfChanged(indexFile, index.toBytes())) {
+                getLog().info("Classpath index saved to: " + indexFile.getAbsolutePath()
+                    + " (scanned " + scanned.get() + " of " + classpath.size() + " entries)");
+            } else {
+                getLog().info("Classpath index unchanged: " + indexFile.getAbsolutePath());
+            }
+
+            writeConflicts(index);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write classpath index", e);
+        }
+    }
+
+    private void writeConflicts(ClasspathIndex index) throws IOException {
+        List<EntryFingerprint> entries = index.getEntries();
+        StringBuilder sb = new StringBuilder();
+        int duplicateClasses = 0;
+        int splitPackages = 0;
+
+        for (Map.Entry<String, Map<String, List<Integer>>> pkg : index.getPackages().entrySet()) {
+            List<Integer> packageProviders = index.getPackageProviders(pkg.getKey());
+            if (packageProviders.size() > 1) {
+                splitPackages++;
+                sb.append("split package ").append(pkg.getKey().isEmpty() ? "<default>" : pkg.getKey())
+                    .append(": ").append(entryNames(entries, packageProviders)).append("\n");
+            }
+            for (Map.Entry<String, List<Integer>> cls : pkg.getValue().entrySet()) {
+                if (cls.getValue().size() > 1) {
+                    duplicateClasses++;
+                    sb.append("duplicate class ").append(pkg.getKey().isEmpty() ? "" : pkg.getKey() + ".").append(cls.getKey())
+                        .append(": ").append(entryNames(entries, cls.getValue())).append("\n");
+                }
+            }
+        }
+
+        OutputFiles.writeIfChanged(conflictsFile, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        if (duplicateClasses > 0 || splitPackages > 0) {
+            getLog().warn("Classpath has " + duplicateClasses + " duplicate classes and " + splitPackages
+                + " split packages (see " + conflictsFile.getAbsolutePath() + ")");
+        }
+    }
+
+    static private String entryNames(List<EntryFingerprint> entries, List<Integer> indexes) {
+        return indexes.stream()
+            .map(i -> entries.get(i).getEntry())
+            .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Class names ("." separated) supplied by the entry (versioned classes of
+     * multi-release jars and module descriptors are skipped).
+     */
+    static List<String> scan(EntryFingerprint fingerprint) throws IOException {
+        if (!fingerprint.isExists()) {
+            return new ArrayList<>();
+        }
+
+        List<String> names;
+        if (fingerprint.isDirectory()) {
+            Path dir = Paths.get(fingerprint.getEntry());
+            try (Stream<Path> walk = Files.walk(dir)) {
+                names = walk
+                    .filter(p -> p.getFileName().toString().endsWith(".class") && Files.isRegularFile(p))
+                    .map(p -> dir.relativize(p).toString().replace('\\', '/'))
+                    .collect(Collectors.toList());
+            }
+        } else {
+            names = ZipDirectory.entryNames(Paths.get(fingerprint.getEntry()), ZipDirectory.endsWith(".class"));
+        }
+
+        return names.stream()
+            .filter(name -> !name.startsWith("META-INF/") && !name.equals("module-info.class"))
+            .map(name -> name.substring(0, name.length() - ".class".length()).replace('/', '.'))
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    static private class ScannedEntry {
+
+        private final EntryFingerprint fingerprint;
+        private final List<String> classes;
+
+        ScannedEntry(EntryFingerprint fingerprint, List<String> classes) {
+            this.fingerprint = fingerprint;
+            this.classes = classes;
+        }
+    }
+
+}
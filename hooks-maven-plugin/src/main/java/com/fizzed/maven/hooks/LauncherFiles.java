@@ -0,0 +1,193 @@
+package com.fizzed.maven.hooks;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+/**
+ * Renders a classpath in formats launchers can hand straight to the JVM,
+ * without parsing classpath.txt or building a (possibly too long) command
+ * line themselves.
+ */
+class LauncherFiles {
+
+    /**
+     * A "java @argfile" with the classpath, e.g. `java @target/classpath.args com.example.Main`
+     * (Java 9+).
+     */
+    static public byte[] argFile(List<String> classpath) {
+        return ("-cp " + quote(String.join(File.pathSeparator, classpath)) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A "java @argfile" with the explicit modules (jars and directories with a
+     * module-info.class) and every module they require (transitively, also
+     * automatic modules) on the module path and everything else on the
+     * classpath. The modules are added to the boot layer (--add-modules
+     * ALL-MODULE-PATH) so classes on the classpath can use them. Required
+     * modules that are not on the classpath (and not part of the JDK) are
+     * logged as a warning since the JVM will refuse to start.
+     */
+    static public byte[] moduleArgFile(List<String> classpath, Log log) throws IOException {
+        // the first entry with a module name wins (like on the module path)
+        Map<String, String> entriesByName = new HashMap<>();
+        Map<String, ModuleEntry> modules = new HashMap<>();
+        for (String entry : classpath) {
+            ModuleEntry module = ModuleEntry.of(Paths.get(entry));
+            if (module != null && !entriesByName.containsKey(module.getName())) {
+                entriesByName.put(module.getName(), entry);
+                modules.put(entry, module);
+            }
+        }
+
+        Set<String> onModulePath = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        for (String entry : classpath) {
+            ModuleEntry module = modules.get(entry);
+            if (module != null && !module.isAutomatic() && onModulePath.add(entry)) {
+                pending.add(entry);
+            }
+        }
+        while (!pending.isEmpty()) {
+            ModuleEntry module = modules.get(pending.poll());
+            List<String> required = new ArrayList<>(module.getRequires());
+            // optional, but if present they must be modules too to be readable
+            required.addAll(module.getStaticRequires());
+            for (String name : required) {
+                String entry = entriesByName.get(name);
+                if (entry == null) {
+                    if (module.getRequires().contains(name) && !name.startsWith("java.") && !name.startsWith("jdk.")) {
+                        log.warn("Module " + module.getName() + " requires " + name + " which is not on the classpath");
+                    }
+                } else if (onModulePath.add(entry)) {
+                    pending.add(entry);
+                }
+            }
+        }
+
+        List<String> modulePath = new ArrayList<>();
+        List<String> classPath = new ArrayList<>();
+        for (String entry : classpath) {
+            if (onModulePath.contains(entry)) {
+                modulePath.add(entry);
+            } else {
+                classPath.add(entry);
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        if (!modulePath.isEmpty()) {
+            sb.append("--module-path ").append(quote(String.join(File.pathSeparator, modulePath))).append("\n");
+            sb.append("--add-modules ALL-MODULE-PATH\n");
+        }
+        if (!classPath.isEmpty()) {
+            sb.append("-cp ").append(quote(String.join(File.pathSeparator, classPath))).append("\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A jar with only a manifest whose Class-Path attribute lists the entries
+     * (relative to the jar), so `java -cp target/classpath.jar com.example.Main`
+     * works on any Java version and with any classpath length. The jar is
+     * deterministic (fixed entry time) so it only changes if the classpath did.
+     */
+    static public byte[] pathingJar(List<String> classpath, File jarFile) throws IOException {
+        Path jarDir = jarFile.toPath().toAbsolutePath().normalize().getParent();
+
+        StringBuilder cp = new StringBuilder();
+        for (String entry : classpath) {
+            if (cp.length() > 0) {
+                cp.append(' ');
+            }
+            cp.append(classPathUri(jarDir, Paths.get(entry).toAbsolutePath().normalize()));
+        }
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, cp.toString());
+
+        ZipEntry entry = new ZipEntry(JarFile.MANIFEST_NAME);
+        // dos time is local time, so this is the same zip entry in any timezone
+        entry.setTime(LocalDateTime.of(2010, 1, 1, 0, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (JarOutputStream jar = new JarOutputStream(baos)) {
+            jar.putNextEntry(entry);
+            manifest.write(jar);
+            jar.closeEntry();
+        }
+        return baos.toByteArray();
+    }
+
+    static private String classPathUri(Path base, Path entry) {
+        // directories must end with a "/" or they are treated as jars
+        boolean directory = !Files.isRegularFile(entry);
+        String uri;
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (Path segment : base.relativize(entry)) {
+                if (sb.length() > 0) {
+                    sb.append('/');
+                }
+                sb.append(encode(segment.toString()));
+            }
+            uri = sb.toString();
+        } catch (IllegalArgumentException e) {
+            // no relative path (e.g. a different drive on windows)
+            uri = entry.toUri().toASCIIString();
+        }
+        if (directory && !uri.endsWith("/")) {
+            uri += "/";
+        }
+        return uri;
+    }
+
+    /**
+     * Percent encodes a path segment (a ":" is encoded too so a segment is
+     * never mistaken for a URI scheme).
+     */
+    static private String encode(String segment) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : segment.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char)(b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || "-._~!$&'()*+,;=@".indexOf(c) >= 0) {
+                sb.append(c);
+            } else {
+                sb.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)))
+                    .append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Quotes an argument for a java @argfile (backslashes and quotes are
+     * escaped, e.g. windows paths).
+     */
+    static private String quote(String arg) {
+        return "\"" + arg.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+}
@@ -0,0 +1,265 @@
+package com.fizzed.maven.hooks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+
+/**
+ * The module a classpath entry would be on the module path: an explicit
+ * module (with a module-info.class) or an automatic module (a plain jar named
+ * by its Automatic-Module-Name or derived from its file name, the same way
+ * the JVM does). Module descriptors are read straight from the class file, so
+ * this works on any Java version maven runs on.
+ */
+class ModuleEntry {
+
+    static private final String MODULE_INFO = "module-info.class";
+    static private final Pattern VERSIONED_MODULE_INFO = Pattern.compile("META-INF/versions/(\\d+)/module-info\\.class");
+    static private final Pattern FILE_NAME_VERSION = Pattern.compile("-(\\d+(\\.|$))");
+    static private final int ACC_STATIC_PHASE = 0x0040;
+    static private final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+        "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+        "default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if",
+        "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "package", "private",
+        "protected", "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+        "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false", "null", "_"));
+
+    private final String name;
+    private final boolean automatic;
+    private final List<String> requires;
+    private final List<String> staticRequires;
+
+    ModuleEntry(String name, boolean automatic, List<String> requires, List<String> staticRequires) {
+        this.name = name;
+        this.automatic = automatic;
+        this.requires = Collections.unmodifiableList(requires);
+        this.staticRequires = Collections.unmodifiableList(staticRequires);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isAutomatic() {
+        return automatic;
+    }
+
+    /**
+     * Modules required at runtime (none for automatic modules, they read every
+     * other module as well as the classpath).
+     */
+    public List<String> getRequires() {
+        return requires;
+    }
+
+    /**
+     * Modules only required at compile time ("requires static").
+     */
+    public List<String> getStaticRequires() {
+        return staticRequires;
+    }
+
+    /**
+     * Describes the module of the entry or returns null if it cannot be a
+     * module (missing, a directory without a module-info.class, not a jar or
+     * no valid module name).
+     */
+    static public ModuleEntry of(Path entry) throws IOException {
+        if (Files.isDirectory(entry)) {
+            Path moduleInfo = entry.resolve(MODULE_INFO);
+            return Files.isRegularFile(moduleInfo) ? parse(Files.readAllBytes(moduleInfo)) : null;
+        }
+        String fileName = entry.getFileName().toString();
+        if (!Files.isRegularFile(entry) || !fileName.endsWith(".jar")) {
+            return null;
+        }
+
+        try (JarFile jar = new JarFile(entry.toFile(), false)) {
+            Manifest manifest = jar.getManifest();
+            Attributes attributes = manifest != null ? manifest.getMainAttributes() : new Attributes();
+
+            ZipEntry moduleInfo = jar.getEntry(MODULE_INFO);
+            if (moduleInfo == null && "true".equalsIgnoreCase(attributes.getValue("Multi-Release"))) {
+                moduleInfo = versionedModuleInfo(jar, entry);
+            }
+            if (moduleInfo != null) {
+                try (InputStream input = jar.getInputStream(moduleInfo)) {
+                    return parse(readAll(input));
+                }
+            }
+
+            String name = attributes.getValue("Automatic-Module-Name");
+            if (name == null) {
+                name = deriveName(fileName.substring(0, fileName.length() - ".jar".length()));
+            }
+            return isValidName(name) ? new ModuleEntry(name, true, new ArrayList<>(), new ArrayList<>()) : null;
+        }
+    }
+
+    /**
+     * The module-info.class of the highest java version in a multi-release jar.
+     */
+    static private ZipEntry versionedModuleInfo(JarFile jar, Path entry) throws IOException {
+        String best = null;
+        int bestVersion = -1;
+        for (String name : ZipDirectory.entryNames(entry, ZipDirectory.endsWith(MODULE_INFO))) {
+            Matcher matcher = VERSIONED_MODULE_INFO.matcher(name);
+            if (matcher.matches() && Integer.parseInt(matcher.group(1)) > bestVersion) {
+                bestVersion = Integer.parseInt(matcher.group(1));
+                best = name;
+            }
+        }
+        return best != null ? jar.getEntry(best) : null;
+    }
+
+    /**
+     * Derives the name of an automatic module from its file name (without
+     * ".jar"), e.g. "commons-lang3-3.12.0" is "commons.lang3".
+     */
+    static String deriveName(String fileName) {
+        Matcher matcher = FILE_NAME_VERSION.matcher(fileName);
+        String name = matcher.find() ? fileName.substring(0, matcher.start()) : fileName;
+        name = name.replaceAll("[^A-Za-z0-9]", ".").replaceAll("\\.{2,}", ".");
+        int start = 0;
+        int end = name.length();
+        while (start < end && name.charAt(start) == '.') {
+            start++;
+        }
+        while (end > start && name.charAt(end - 1) == '.') {
+            end--;
+        }
+        return name.substring(start, end);
+    }
+
+    static boolean isValidName(String name) {
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+        for (String part : name.split("\\.", -1)) {
+            if (part.isEmpty() || KEYWORDS.contains(part) || !Character.isJavaIdentifierStart(part.charAt(0))) {
+                return false;
+            }
+            for (int i = 1; i < part.length(); i++) {
+                if (!Character.isJavaIdentifierPart(part.charAt(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the name and requires of a module-info.class (the "Module"
+     * attribute, see JVMS 4.7.25).
+     */
+    static ModuleEntry parse(byte[] classFile) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+        if (in.readInt() != 0xCAFEBABE) {
+            throw new IOException("Invalid module-info.class (bad magic)");
+        }
+        in.readUnsignedShort();     // minor version
+        in.readUnsignedShort();     // major version
+
+        int constantCount = in.readUnsignedShort();
+        String[] utf8s = new String[constantCount];
+        int[] moduleNames = new int[constantCount];
+        for (int i = 1; i < constantCount; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1:     // utf8
+                    utf8s[i] = in.readUTF();
+                    break;
+                case 19:    // module
+                    moduleNames[i] = in.readUnsignedShort();
+                    break;
+                case 7: case 8: case 16: case 20:   // class, string, method type, package
+                    in.skipBytes(2);
+                    break;
+                case 15:    // method handle
+                    in.skipBytes(3);
+                    break;
+                case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+                    in.skipBytes(4);
+                    break;
+                case 5: case 6:     // long, double (take two slots)
+                    in.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Invalid module-info.class (constant tag " + tag + ")");
+            }
+        }
+
+        in.skipBytes(6);    // access flags, this class, super class
+        in.skipBytes(2 * in.readUnsignedShort());   // interfaces
+        skipMembers(in);    // fields
+        skipMembers(in);    // methods
+
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            String attributeName = utf8s[in.readUnsignedShort()];
+            int length = in.readInt();
+            if (!"Module".equals(attributeName)) {
+                in.skipBytes(length);
+                continue;
+            }
+
+            String name = utf8s[moduleNames[in.readUnsignedShort()]];
+            in.skipBytes(4);    // flags, version
+            List<String> requires = new ArrayList<>();
+            List<String> staticRequires = new ArrayList<>();
+            int requiresCount = in.readUnsignedShort();
+            for (int j = 0; j < requiresCount; j++) {
+                String required = utf8s[moduleNames[in.readUnsignedShort()]];
+                int flags = in.readUnsignedShort();
+                in.skipBytes(2);    // version
+                ((flags & ACC_STATIC_PHASE) != 0 ? staticRequires : requires).add(required);
+            }
+            if (name == null) {
+                throw new IOException("Invalid module-info.class (no module name)");
+            }
+            return new ModuleEntry(name, false, requires, staticRequires);
+        }
+
+        throw new IOException("Invalid module-info.class (no module attribute)");
+    }
+
+    static private void skipMembers(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            in.skipBytes(6);    // access flags, name, descriptor
+            int attributeCount = in.readUnsignedShort();
+            for (int j = 0; j < attributeCount; j++) {
+                in.skipBytes(2);
+                in.skipBytes(in.readInt());
+            }
+        }
+    }
+
+    static private byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = input.read(buf)) > 0) {
+            baos.write(buf, 0, n);
+        }
+        return baos.toByteArray();
+    }
+
+}
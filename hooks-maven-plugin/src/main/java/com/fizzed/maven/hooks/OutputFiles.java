@@ -0,0 +1,61 @@
+package com.fizzed.maven.hooks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Helpers for writing output files that other tools (launchers, watchers)
+ * consume: files are replaced atomically and left untouched (keeping their
+ * mtime) if their content did not change.
+ */
+class OutputFiles {
+
+    /**
+     * Writes the content to the file (see write) if it differs from the
+     * current content.
+     *
+     * @return True if the file was written or false if it was unchanged.
+     */
+    static public boolean writeIfChanged(File file, byte[] content) throws IOException {
+        Path path = file.toPath();
+
+        if (Files.isRegularFile(path) && Files.size(path) == content.length
+                && Arrays.equals(content, Files.readAllBytes(path))) {
+            return false;
+        }
+
+        write(file, content);
+        return true;
+    }
+
+    /**
+     * Replaces the file with the content (even if it is the same, e.g. to
+     * signal watchers): written to a temp file in the same directory and then
+     * moved into place, so readers never see a partially written file.
+     */
+    static public void write(File file, byte[] content) throws IOException {
+        Path path = file.toPath();
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+
+        // not Files.createTempFile() since it would create the file w/ owner only permissions
+        Path temp = parent.resolve("." + file.getName() + "." + Long.toHexString(System.nanoTime()) + ".tmp");
+        try {
+            Files.write(temp, content, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+}
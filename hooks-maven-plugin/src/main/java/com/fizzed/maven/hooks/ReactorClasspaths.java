@@ -0,0 +1,262 @@
+package com.fizzed.maven.hooks;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystemSession;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Computes (and caches) the classpath of the projects in a reactor build.
+ *
+ * One instance is shared by all modules of a maven session, so the index of
+ * reactor projects (by groupId:artifactId:version) is only built once and a
+ * module's computed classpath can be reused by any goal that needs it later
+ * in the build. Safe to use from multiple threads (e.g. "mvn -T 4").
+ */
+class ReactorClasspaths {
+
+    // keyed by the class (not its name): every plugin realm loads its own copy of it
+    static private final Object SESSION_KEY = ReactorClasspaths.class;
+
+    private final Map<ProjectKey, MavenProject> projectsByKey;
+    private final ConcurrentMap<String, CachedClasspath> classpaths;
+
+    ReactorClasspaths(List<MavenProject> reactorProjects) {
+        this.projectsByKey = new HashMap<>(reactorProjects.size() * 2);
+        for (MavenProject p : reactorProjects) {
+            this.projectsByKey.put(new ProjectKey(p.getGroupId(), p.getArtifactId(), p.getVersion()), p);
+        }
+        this.classpaths = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets (or creates) the instance shared by the session.
+     */
+    static public ReactorClasspaths of(MavenSession session, List<MavenProject> reactorProjects) {
+        RepositorySystemSession repositorySession = session.getRepositorySession();
+        if (repositorySession == null || repositorySession.getData() == null) {
+            return new ReactorClasspaths(reactorProjects);
+        }
+        return (ReactorClasspaths)repositorySession.getData()
+            .computeIfAbsent(SESSION_KEY, () -> new ReactorClasspaths(reactorProjects));
+    }
+
+    /**
+     * Finds the reactor project of a dependency or null if its not part of this build.
+     */
+    public MavenProject findProject(Artifact artifact) {
+        return this.projectsByKey.get(new ProjectKey(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion()));
+    }
+
+    /**
+     * Gets the ordered classpath of the project for the scope: the project's
+     * own output (and the output of any reactor dependencies) first, followed
+     * by all other dependencies. Computed once and reused until the packaged
+     * artifact of the project (or one of its reactor dependencies) changes.
+     *
+     * @param project The project to get the classpath of.
+     * @param scope   The scope "compile", "runtime" or "test".
+     * @param log     The log for debug output.
+     */
+    public List<String> getClasspath(MavenProject project, String scope, Log log) throws MojoExecutionException {
+        String key = project.getId() + "@" + scope.toLowerCase();
+
+        // the artifact files are set when projects are packaged, which changes their output
+        List<File> artifactFiles = new ArrayList<>();
+        artifactFiles.add(project.getArtifact().getFile());
+        for (Artifact dep : project.getArtifacts()) {
+            MavenProject reactorProject = findProject(dep);
+            if (reactorProject != null) {
+                artifactFiles.add(reactorProject.getArtifact().getFile());
+            }
+        }
+
+        CachedClasspath cached = this.classpaths.get(key);
+        if (cached != null && cached.artifactFiles.equals(artifactFiles)) {
+            log.debug("Reusing computed classpath of " + key);
+            return cached.classpath;
+        }
+
+        List<String> classpath = Collections.unmodifiableList(new ArrayList<>(computeClasspath(project, scope, log)));
+        this.classpaths.put(key, new CachedClasspath(artifactFiles, classpath));
+        return classpath;
+    }
+
+    private Set<String> computeClasspath(MavenProject project, String scope, Log log) throws MojoExecutionException {
+        // Use LinkedHashSet to preserve order and avoid duplicates
+        // We will build two separate lists and combine them
+        Set<String> reactorPaths = new LinkedHashSet<>();
+        Set<String> dependencyPaths = new LinkedHashSet<>();
+
+        List<String> baseClasspathElements;
+        try {
+            // Select the correct base classpath list from Maven
+            switch (scope.toLowerCase()) {
+                case "compile":
+                    baseClasspathElements = project.getCompileClasspathElements();
+                    // Add current project's output
+                    addProjectOutputToClasspath(project, reactorPaths, false, log);
+                    break;
+                case "test":
+                    baseClasspathElements = project.getTestClasspathElements();
+                    // Add current project's test/main output directories FIRST
+                    addProjectOutputToClasspath(project, reactorPaths, true, log);
+                    break;
+                case "runtime":
+                    baseClasspathElements = project.getRuntimeClasspathElements();
+                    // Add current project's output
+                    addProjectOutputToClasspath(project, reactorPaths, false, log);
+                    break;
+                default:
+                    throw new MojoExecutionException("Invalid scope: " + scope + ". Must be one of 'compile', 'runtime', or 'test'.");
+            }
+            // Add all other elements to the dependency list
+            dependencyPaths.addAll(baseClasspathElements);
+
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("Dependency resolution failed", e);
+        }
+
+        // --- FIX for classpath duplication ---
+        // The baseClasspathElements (e.g., from getRuntimeClasspathElements)
+        // often contains the target/classes directory for the *current* project.
+        // We must remove it here to prevent duplication, since
+        // addProjectOutputToClasspath() adds the correct JAR or classes path.
+        dependencyPaths.remove(project.getBuild().getOutputDirectory());
+        dependencyPaths.remove(project.getBuild().getTestOutputDirectory());
+        // --- END FIX ---
+
+        // --- FIX for multi-module reactor builds ---
+        // Manually find all reactor dependencies and add their output paths
+        // to the high-priority 'reactorPaths' list.
+
+        // Get all dependency artifacts for the current project
+        Set<Artifact> dependencies = project.getArtifacts();
+
+        for (Artifact dep : dependencies) {
+            // Check if this dependency is one of the modules in this build
+            MavenProject reactorProject = findProject(dep);
+            if (reactorProject == null) {
+                continue;
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("Found reactor dependency: " + reactorProject.getId());
+            }
+
+            // Check if this is a test dependency
+            boolean isTestDependency = "test".equalsIgnoreCase(dep.getScope()) || "test".equalsIgnoreCase(scope);
+
+            // Add the reactor project's output (JAR or classes) to reactorPaths
+            addProjectOutputToClasspath(reactorProject, reactorPaths, isTestDependency, log);
+
+            // Remove from dependencyPaths to avoid duplication
+            dependencyPaths.remove(reactorProject.getBuild().getOutputDirectory());
+            dependencyPaths.remove(reactorProject.getBuild().getTestOutputDirectory());
+            if (reactorProject.getArtifact().getFile() != null) {
+                dependencyPaths.remove(reactorProject.getArtifact().getFile().getAbsolutePath());
+            }
+        }
+        // --- END FIX ---
+
+        // Now, combine the two lists: reactor paths first, then all other dependencies.
+        // There are still possible duplicates, we'll remove them now
+        Set<String> finalClasspath = new LinkedHashSet<>();
+        finalClasspath.addAll(reactorPaths);
+        finalClasspath.addAll(dependencyPaths);
+
+        // Remove any empty entries
+        finalClasspath.removeIf(String::isEmpty);
+
+        return finalClasspath;
+    }
+
+    /**
+     * Helper method to add the correct output (JAR or classes directory) to the classpath.
+     *
+     * @param proj         The project to get output from.
+     * @param pathSet      The set of paths to add to.
+     * @param isTestScope  Whether the test-classes directory should also be added.
+     * @param log          The log for debug output.
+     */
+    private void addProjectOutputToClasspath(MavenProject proj, Set<String> pathSet, boolean isTestScope, Log log) {
+        // Test output directory is always added first if in test scope
+        if (isTestScope) {
+            pathSet.add(proj.getBuild().getTestOutputDirectory());
+        }
+
+        // Check if the packaged artifact file (JAR) exists
+        File artifactFile = proj.getArtifact().getFile();
+
+        if (artifactFile != null && artifactFile.isFile()) {
+            // If JAR exists, add it
+            pathSet.add(artifactFile.getAbsolutePath());
+            log.debug("Added JAR path: " + artifactFile.getAbsolutePath());
+        } else {
+            // Otherwise, fall back to the classes directory
+            pathSet.add(proj.getBuild().getOutputDirectory());
+            log.debug("Added classes directory: " + proj.getBuild().getOutputDirectory());
+        }
+    }
+
+    static private class CachedClasspath {
+
+        private final List<File> artifactFiles;
+        private final List<String> classpath;
+
+        CachedClasspath(List<File> artifactFiles, List<String> classpath) {
+            this.artifactFiles = artifactFiles;
+            this.classpath = classpath;
+        }
+    }
+
+    static private class ProjectKey {
+
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+        private final int hash;
+
+        ProjectKey(String groupId, String artifactId, String version) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.hash = Objects.hash(groupId, artifactId, version);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ProjectKey)) {
+                return false;
+            }
+            ProjectKey other = (ProjectKey)o;
+            return this.hash == other.hash
+                && Objects.equals(this.artifactId, other.artifactId)
+                && Objects.equals(this.groupId, other.groupId)
+                && Objects.equals(this.version, other.version);
+        }
+    }
+}
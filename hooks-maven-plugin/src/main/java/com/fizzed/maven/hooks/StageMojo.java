@@ -0,0 +1,346 @@
+package com.fizzed.maven.hooks;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Stages the project's classpath into a runnable layout directory: every
+ * entry is placed in "lib/" and a "classpath.txt" with the relative paths of
+ * the entries (in classpath order) is written next to it.
+ *
+ * Jars in the local maven repository are hardlinked from there, so staging
+ * hundreds of MB of jars costs no I/O (maven replaces files in the local
+ * repository atomically, it never rewrites them in place). Any other jar (e.g.
+ * the jar of a reactor module, which maven-jar-plugin rewrites in place) or a
+ * jar that cannot be hardlinked directly (e.g. a different filesystem) is
+ * copied once into a content addressed cache (by SHA-256, its files are never
+ * modified) and hardlinked from there, falling back to a plain copy as a last
+ * resort. Directories (e.g. target/classes of reactor modules) are copied
+ * since their files are rewritten in place by the compiler. Only entries that
+ * changed since the previous run are staged again and entries no longer on
+ * the classpath are removed.
+ *
+ * Since jars are hardlinked, files in the layout must never be modified in
+ * place (that would modify the original too).
+ */
+@Mojo(
+    name = "stage",
+    defaultPhase = LifecyclePhase.PACKAGE,
+    requiresDependencyResolution = ResolutionScope.TEST,
+    threadSafe = true
+)
+public class StageMojo extends AbstractMojo {
+
+    static private final String STATE_FILE = ".stage-state";
+    // v2: jars outside the local repository are no longer linked directly (restage them once)
+    static private final String STATE_HEADER = "# stage state v2";
+
+    /**
+     * The Maven project instance. This is injected by Maven.
+     */
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    /**
+     * The current build session. This is injected by Maven.
+     */
+    @Parameter(defaultValue = "${session}", readonly = true, required = true)
+    private MavenSession session;
+
+    /**
+     * A list of all projects in the current reactor build.
+     */
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * The scope of the classpath to stage.
+     * Valid values are "compile", "runtime", or "test".
+     */
+    @Parameter(property = "classpath.scope", defaultValue = "runtime")
+    private String scope;
+
+    /**
+     * The layout directory to stage the classpath into.
+     */
+    @Parameter(property = "stage.layoutDirectory", defaultValue = "${project.build.directory}/layout")
+    private File layoutDirectory;
+
+    /**
+     * The content addressed cache used for jars that cannot be hardlinked
+     * directly (share it across projects to save space, it must be on the
+     * same filesystem as the layout directory).
+     */
+    @Parameter(property = "stage.cacheDirectory", defaultValue = "${project.build.directory}/stage-cache")
+    private File cacheDirectory;
+
+    /**
+     * Number of threads used to stage the entries (0 for the number of
+     * available processors).
+     */
+    @Parameter(property = "stage.threads", defaultValue = "0")
+    private int threads;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        List<String> classpath = ReactorClasspaths.of(session, reactorProjects).getClasspath(project, scope, getLog());
+
+        Path layoutDir = layoutDirectory.toPath().toAbsolutePath();
+        Path libDir = layoutDir.resolve("lib");
+        Path stateFile = layoutDir.resolve(STATE_FILE);
+        Path localRepositoryDir = localRepositoryDir();
+
+        // name in lib/ -> classpath entry (unique names, in classpath order)
+        Map<String, String> names = assignNames(classpath);
+
+        Map<String, String> previousState = readState(stateFile);
+        Map<String, String> state = new LinkedHashMap<>();
+
+        AtomicInteger linked = new AtomicInteger();
+        AtomicInteger copied = new AtomicInteger();
+        AtomicInteger unchanged = new AtomicInteger();
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(poolSize);
+        try {
+            Files.createDirectories(libDir);
+
+            List<String[]> results = pool.submit(() -> names.entrySet().parallelStream()
+                .map(e -> {
+                    try {
+                        String name = e.getKey();
+                        EntryFingerprint fingerprint = EntryFingerprint.stat(e.getValue());
+                        if (!fingerprint.isExists()) {
+                            return null;
+                        }
+                        String line = fingerprint.toLine();
+                        Path target = libDir.resolve(name);
+                        if (line.equals(previousState.get(name)) && Files.exists(target)) {
+                            unchanged.incrementAndGet();
+                        } else if (fingerprint.isDirectory()) {
+                            copyDirectory(Paths.get(fingerprint.getEntry()), target);
+                            copied.incrementAndGet();
+                        } else if (stageFile(Paths.get(fingerprint.getEntry()), target, localRepositoryDir)) {
+                            linked.incrementAndGet();
+                        } else {
+                            copied.incrementAndGet();
+                        }
+                        return new String[] { name, line };
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(new IOException("Unable to stage " + e.getValue() + ": " + ex.getMessage(), ex));
+                    }
+                })
+                .collect(Collectors.toList())).get();
+
+            for (String[] result : results) {
+                if (result != null) {
+                    state.put(result[0], result[1]);
+                }
+            }
+
+            // remove anything no longer on the classpath
+            int removed = 0;
+            try (Stream<Path> files = Files.list(libDir)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    if (!state.containsKey(file.getFileName().toString())) {
+                        deleteRecursively(file);
+                        removed++;
+                    }
+                }
+            }
+
+            StringBuilder cp = new StringBuilder();
+            StringBuilder sb = new StringBuilder(STATE_HEADER).append("\n");
+            for (Map.Entry<String, String> entry : state.entrySet()) {
+                cp.append("lib/").append(entry.getKey()).append("\n");
+                sb.append(entry.getKey()).append("\t").append(entry.getValue()).append("\n");
+            }
+            OutputFiles.writeIfChanged(layoutDir.resolve("classpath.txt").toFile(), cp.toString().getBytes(StandardCharsets.UTF_8));
+            OutputFiles.writeIfChanged(stateFile.toFile(), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+            getLog().info("Classpath staged to: " + layoutDir + " (" + linked.get() + " linked, " + copied.get() + " copied, "
+                + unchanged.get() + " unchanged, " + removed + " removed)");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to stage classpath", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Failed to stage classpath: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while staging classpath", e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Names each entry in lib/ after its file name, or for directories after
+     * the module they belong to (e.g. "core-classes"). Clashing names get the
+     * hash of the entry's path appended.
+     */
+    private Map<String, String> assignNames(List<String> classpath) {
+        Map<String, String> names = new LinkedHashMap<>();
+        Set<String> taken = new HashSet<>();
+        for (String entry : classpath) {
+            Path path = Paths.get(entry);
+            String name = path.getFileName().toString();
+            if (Files.isDirectory(path) && path.getParent() != null && path.getParent().getParent() != null) {
+                // e.g. core/target/classes -> core-classes
+                name = path.getParent().getParent().getFileName() + "-" + name;
+            }
+            if (!taken.add(name)) {
+                int dot = name.lastIndexOf('.');
+                String suffix = "-" + Integer.toHexString(entry.hashCode());
+                name = dot > 0 ? name.substring(0, dot) + suffix + name.substring(dot) : name + suffix;
+                taken.add(name);
+            }
+            names.put(name, entry);
+        }
+        return names;
+    }
+
+    /**
+     * The local repository directory or null if it is unknown.
+     */
+    private Path localRepositoryDir() {
+        if (session.getRepositorySession() == null || session.getRepositorySession().getLocalRepository() == null) {
+            return null;
+        }
+        File basedir = session.getRepositorySession().getLocalRepository().getBasedir();
+        return basedir != null ? basedir.toPath().toAbsolutePath().normalize() : null;
+    }
+
+    /**
+     * Hardlinks the file to the target, directly if it is in the local
+     * repository (whose files are never modified in place) or else via the
+     * content addressed cache, or copies it as a last resort.
+     *
+     * @return True if the target was linked or false if it was copied.
+     */
+    private boolean stageFile(Path source, Path target, Path localRepositoryDir) throws IOException {
+        Files.deleteIfExists(target);
+
+        Path normalizedSource = source.toAbsolutePath().normalize();
+        if (localRepositoryDir != null && normalizedSource.startsWith(localRepositoryDir) && tryLink(target, source)) {
+            return true;
+        }
+
+        Path cached = cachedCopy(source);
+        if (tryLink(target, cached)) {
+            return true;
+        }
+
+        getLog().debug("Unable to hardlink " + target + " (copying instead)");
+        Files.copy(cached, target, StandardCopyOption.COPY_ATTRIBUTES);
+        return false;
+    }
+
+    private Path cachedCopy(Path source) throws IOException {
+        String hash = EntryFingerprint.stat(source.toString()).computeHash();
+        String fileName = source.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        Path cached = cacheDirectory.toPath().toAbsolutePath()
+            .resolve(hash.substring(0, 2))
+            .resolve(hash + (dot > 0 ? fileName.substring(dot) : ""));
+
+        if (!Files.isRegularFile(cached)) {
+            Files.createDirectories(cached.getParent());
+            Path temp = cached.resolveSibling(cached.getFileName() + "." + Long.toHexString(System.nanoTime()) + ".tmp");
+            try {
+                Files.copy(source, temp, StandardCopyOption.COPY_ATTRIBUTES);
+                Files.move(temp, cached, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // another thread (or build) cached the same content first
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        return cached;
+    }
+
+    static private boolean tryLink(Path link, Path existing) {
+        try {
+            Files.createLink(link, existing);
+            return true;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+
+    static private void copyDirectory(Path source, Path target) throws IOException {
+        deleteRecursively(target);
+        try (Stream<Path> files = Files.walk(source)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Path dest = target.resolve(source.relativize(file).toString());
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(dest);
+                } else {
+                    Files.copy(file, dest, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+        }
+    }
+
+    static private void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    static private Map<String, String> readState(Path stateFile) throws MojoExecutionException {
+        Map<String, String> state = new HashMap<>();
+        if (!Files.isRegularFile(stateFile)) {
+            return state;
+        }
+        try {
+            List<String> lines = Files.readAllLines(stateFile, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).equals(STATE_HEADER)) {
+                return state;
+            }
+            for (String line : lines) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    state.put(line.substring(0, tab), line.substring(tab + 1));
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read stage state " + stateFile, e);
+        }
+        return state;
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.fizzed.maven.hooks;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the entry names of a zip/jar straight from its central directory
+ * using memory mapped I/O. Much cheaper than opening a ZipFile or reading the
+ * jar as a stream since only the central directory at the end of the file is
+ * ever touched (no local headers, no inflating). Supports zip64 and jars with
+ * a prepended preamble (e.g. executable jars with a launch script).
+ */
+class ZipDirectory {
+
+    static private final int EOCD_SIGNATURE = 0x06054b50;
+    static private final int EOCD_SIZE = 22;
+    static private final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    static private final int ZIP64_LOCATOR_SIZE = 20;
+    static private final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    static private final int ZIP64_EOCD_SIZE = 56;
+    static private final int CEN_SIGNATURE = 0x02014b50;
+    static private final int CEN_SIZE = 46;
+
+    /**
+     * Filters entry names before they are decoded (so no strings are created
+     * for entries that are not of interest).
+     */
+    interface NameFilter {
+
+        boolean accept(MappedByteBuffer buf, int offset, int length);
+
+    }
+
+    static public final NameFilter ALL = (buf, offset, length) -> true;
+
+    /**
+     * Accepts entry names that end with the suffix (which must be ASCII).
+     */
+    static public NameFilter endsWith(String suffix) {
+        byte[] b = suffix.getBytes(StandardCharsets.US_ASCII);
+        return (buf, offset, length) -> {
+            if (length < b.length) {
+                return false;
+            }
+            int start = offset + length - b.length;
+            for (int i = 0; i < b.length; i++) {
+                if (buf.get(start + i) != b[i]) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    static public List<String> entryNames(Path file, NameFilter filter) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < EOCD_SIZE) {
+                throw new IOException("Not a zip file (too small): " + file);
+            }
+
+            // end of central directory record is within the last 22 + 64K (max comment) bytes
+            long tailStart = Math.max(0, size - EOCD_SIZE - 0xFFFF);
+            MappedByteBuffer tail = map(channel, tailStart, size - tailStart);
+
+            int eocd = -1;
+            for (int i = tail.limit() - EOCD_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == EOCD_SIGNATURE) {
+                    eocd = i;
+                    break;
+                }
+            }
+            if (eocd < 0) {
+                throw new IOException("Not a zip file (no end of central directory): " + file);
+            }
+
+            long count = tail.getShort(eocd + 10) & 0xFFFF;
+            long cenSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+            // the central directory directly precedes the eocd (this handles preambles)
+            long cenStart = tailStart + eocd - cenSize;
+
+            // a zip64 locator directly precedes the eocd (a plain zip may still have exactly 65535 entries)
+            int locator = eocd - ZIP64_LOCATOR_SIZE;
+            if (locator >= 0 && tail.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+                long locatorStart = tailStart + locator;
+                // the zip64 eocd directly precedes the locator unless it has extensible data, only
+                // then use the offset recorded in the locator (which is off by a preamble, if any)
+                long zip64EocdStart = locatorStart - ZIP64_EOCD_SIZE;
+                if (zip64EocdStart < 0 || map(channel, zip64EocdStart, 4).getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                    zip64EocdStart = tail.getLong(locator + 8);
+                }
+                if (zip64EocdStart < 0 || zip64EocdStart + ZIP64_EOCD_SIZE > locatorStart) {
+                    throw new IOException("Invalid zip64 file (no end of central directory): " + file);
+                }
+                MappedByteBuffer zip64Eocd = map(channel, zip64EocdStart, ZIP64_EOCD_SIZE);
+                if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                    throw new IOException("Invalid zip64 file (no end of central directory): " + file);
+                }
+                count = zip64Eocd.getLong(32);
+                cenSize = zip64Eocd.getLong(40);
+                // the central directory directly precedes the zip64 eocd (this handles preambles)
+                cenStart = zip64EocdStart - cenSize;
+            }
+
+            if (cenStart < 0 || cenSize > Integer.MAX_VALUE || cenStart + cenSize > size) {
+                throw new IOException("Invalid zip file (bad central directory): " + file);
+            }
+
+            MappedByteBuffer cen = map(channel, cenStart, cenSize);
+            List<String> names = new ArrayList<>((int)Math.min(count, 65536));
+            byte[] nameBytes = new byte[256];
+            int pos = 0;
+
+            for (long i = 0; i < count; i++) {
+                if (pos + CEN_SIZE > cen.limit() || cen.getInt(pos) != CEN_SIGNATURE) {
+                    throw new IOException("Invalid zip file (bad central directory header): " + file);
+                }
+                int nameLength = cen.getShort(pos + 28) & 0xFFFF;
+                int extraLength = cen.getShort(pos + 30) & 0xFFFF;
+                int commentLength = cen.getShort(pos + 32) & 0xFFFF;
+                int nameOffset = pos + CEN_SIZE;
+
+                if (filter.accept(cen, nameOffset, nameLength)) {
+                    if (nameBytes.length < nameLength) {
+                        nameBytes = new byte[nameLength];
+                    }
+                    for (int j = 0; j < nameLength; j++) {
+                        nameBytes[j] = cen.get(nameOffset + j);
+                    }
+                    names.add(new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8));
+                }
+
+                pos = nameOffset + nameLength + extraLength + commentLength;
+            }
+
+            return names;
+        }
+    }
+
+    static private MappedByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        return buf;
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.fizzed.maven.version;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.RepositorySystemSession;
+
+/**
+ * Build info shared by all modules of a reactor build (one instance per maven
+ * session). Computes the build timestamp, its formatted value and the git
+ * metadata only once so every module of a (parallel) build gets identical
+ * values. Safe to use from multiple threads.
+ */
+class BuildInfo {
+
+    static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter
+        .ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+        .withZone(ZoneOffset.UTC);
+
+    // keyed by the class (not its name): every plugin realm loads its own copy of it
+    static private final Object SESSION_KEY = BuildInfo.class;
+
+    private final long timestampMillis;
+    private final ConcurrentMap<Long,String> formattedTimestamps;
+    private final ConcurrentMap<String,GitMetadata> gitMetadatas;
+
+    BuildInfo(long timestampMillis) {
+        this.timestampMillis = timestampMillis;
+        this.formattedTimestamps = new ConcurrentHashMap<>();
+        this.gitMetadatas = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets (or creates) the build info of the session.
+     */
+    static public BuildInfo of(MavenSession session) {
+        RepositorySystemSession repositorySession = session.getRepositorySession();
+        if (repositorySession == null || repositorySession.getData() == null) {
+            return new BuildInfo(startMillis(session));
+        }
+        return (BuildInfo)repositorySession.getData()
+            .computeIfAbsent(SESSION_KEY, () -> new BuildInfo(startMillis(session)));
+    }
+
+    static private long startMillis(MavenSession session) {
+        Date startTime = session.getRequest() != null ? session.getRequest().getStartTime() : null;
+        return startTime != null ? startTime.getTime() : System.currentTimeMillis();
+    }
+
+    /**
+     * The build timestamp (start of the maven session).
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public String formatTimestamp(long millis) {
+        return this.formattedTimestamps.computeIfAbsent(millis,
+            (m) -> TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(m)));
+    }
+
+    /**
+     * Git metadata of the work tree containing the directory. Read once per
+     * git directory and concurrent callers wait for the first one to finish.
+     * Returns null if the directory is not within a git work tree.
+     */
+    public GitMetadata getGitMetadata(File dir, boolean checkDirty) throws IOException {
+        Path gitDir = GitMetadata.findGitDir(dir);
+        if (gitDir == null) {
+            return null;
+        }
+
+        String key = gitDir + (checkDirty ? "#dirty" : "");
+        try {
+            return this.gitMetadatas.computeIfAbsent(key, (k) -> {
+                try {
+                    return GitMetadata.read(dir, checkDirty);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+}
@@ -2,12 +2,18 @@ package com.fizzed.maven.version;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -26,6 +32,17 @@ import org.apache.maven.rtinfo.RuntimeInformation;
  * phase and will also attach the outputDirectory it uses to the project's
  * source code.
  * 
+ * Alternatively (outputMode "class") the Version class is written directly as
+ * a class file to the project's build output directory, so no source root is
+ * added and javac is never involved for build info changes.
+ * 
+ * By default the generation is incremental: the source file is only rewritten
+ * if its content actually changed (so its mtime is kept and the compiler does
+ * not consider the module stale) and the inputs of the last run are recorded
+ * in a small state file so unchanged builds are a near no-op. Combine it with
+ * a deterministic timestamp (project.build.outputTimestamp) or the build
+ * timestamp will change the content on every build anyway.
+ * 
  * @author joelauer
  */
 @Mojo(name = "generate",
@@ -34,11 +51,8 @@ import org.apache.maven.rtinfo.RuntimeInformation;
     )
 public class GenerateMojo extends AbstractMojo {
 
-    static final long staticMillis = System.currentTimeMillis();
-    static final SimpleDateFormat defaultDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-    static {
-        defaultDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
-    }
+    // bump whenever the generated content changes so stale state is ignored
+    static final String STATE_FORMAT = "1";
     
     /**
      * Directory to output generated Java source file
@@ -72,6 +86,41 @@ public class GenerateMojo extends AbstractMojo {
     @Parameter(property = "versionCommit", alias = "versionizer.commit", defaultValue = "unknown", required = false)
     protected String versionCommit;
     
+    /**
+     * Detect the commit by reading the project's git repository directly (no
+     * git process is forked). Only used if versionCommit was not supplied.
+     * 
+     * @since 2.0.1
+     */
+    @Parameter(property = "detectCommit", alias = "versionizer.detectCommit", defaultValue = "false", required = false)
+    protected boolean detectCommit;
+    
+    /**
+     * Number of characters of a detected commit hash to use (0 for full hash).
+     * 
+     * @since 2.0.1
+     */
+    @Parameter(property = "commitLength", alias = "versionizer.commitLength", defaultValue = "0", required = false)
+    protected int commitLength;
+    
+    /**
+     * Also detect if the git working tree has uncommitted changes to tracked
+     * files (by comparing the index with file sizes and mtimes) and append the
+     * dirtySuffix to the detected commit if so.
+     * 
+     * @since 2.0.1
+     */
+    @Parameter(property = "detectDirty", alias = "versionizer.detectDirty", defaultValue = "false", required = false)
+    protected boolean detectDirty;
+    
+    /**
+     * Suffix appended to a detected commit if the working tree is dirty.
+     * 
+     * @since 2.0.1
+     */
+    @Parameter(property = "dirtySuffix", alias = "versionizer.dirtySuffix", defaultValue = "-dirty", required = false)
+    protected String dirtySuffix;
+    
     /**
      * Timestamp of build for Version class.
      * 
@@ -112,9 +161,59 @@ public class GenerateMojo extends AbstractMojo {
     @Parameter(property = "versionVendor", alias = "versionizer.vendor", defaultValue = "${project.groupId}", required = true)
     protected String versionVendor;
     
+    /**
+     * Timestamp for reproducible builds (ISO-8601 or seconds since the epoch).
+     * If present (and versionTimestampMillis is not), it is used as the build
+     * timestamp of the Version class instead of the current time.
+     * 
+     * @since 2.0.1
+     */
+    @Parameter(property = "outputTimestamp", defaultValue = "${project.build.outputTimestamp}", required = false)
+    protected String outputTimestamp;
+    
+    /**
+     * Skip rewriting the generated file if its content did not change and
+     * skip generating it entirely if the inputs did not change since the
+     * last run.
+     * 
+     * @since 2.0.1
+     */
+    @Parameter(property = "incremental", alias = "versionizer.incremental", defaultValue = "true", required = false)
+    protected boolean incremental;
+    
+    /**
+     * Directory to store the inputs of the last run (for incremental mode).
+     * 
+     * @since 2.0.1
+     */
+    @Parameter(property = "stateDirectory", defaultValue = "${project.build.directory}/maven-status/version-maven-plugin", required = true)
+    protected File stateDirectory;
+    
+    /**
+     * Output mode: "source" generates a Java source file that is compiled with
+     * the project, "class" writes the compiled class file directly into the
+     * classOutputDirectory (where javac will find it on its classpath when
+     * compiling sources that use it).
+     * 
+     * @since 2.0.1
+     */
+    @Parameter(property = "outputMode", alias = "versionizer.outputMode", defaultValue = "source", required = true)
+    protected String outputMode;
+    
+    /**
+     * Directory to output the generated class file to (outputMode "class").
+     * 
+     * @since 2.0.1
+     */
+    @Parameter(property = "classOutputDirectory", defaultValue = "${project.build.outputDirectory}", required = true)
+    protected File classOutputDirectory;
+    
     @Parameter( defaultValue = "${project}", readonly = true )
     protected MavenProject project;
     
+    @Parameter( defaultValue = "${session}", readonly = true )
+    protected MavenSession session;
+    
     @Component
     private RuntimeInformation runtime;
     
@@ -125,37 +224,161 @@ public class GenerateMojo extends AbstractMojo {
             return;
         }
         
-        if (!outputDirectory.exists()) {
-            getLog().info("Version creating generated source directory: " + outputDirectory);
-            outputDirectory.mkdirs();
+        boolean classMode;
+        if ("class".equalsIgnoreCase(this.outputMode)) {
+            classMode = true;
+        } else if ("source".equalsIgnoreCase(this.outputMode)) {
+            classMode = false;
+        } else {
+            throw new MojoExecutionException("Invalid outputMode: " + this.outputMode + ". Must be one of 'source' or 'class'.");
         }
         
-        // add the output directory to sources that will be compiled
-        this.project.addCompileSourceRoot(outputDirectory.getAbsolutePath());
-        getLog().info("Version generated source directory: " + outputDirectory + " added to project" );
-    
         // convert javaPackage into directory name
         String javaPackagePath = this.javaPackage.replace('.', File.separatorChar);
         getLog().debug("Version java package converted to path: " + javaPackagePath);
-        File javaPackageDir = new File(outputDirectory, javaPackagePath);
-        javaPackageDir.mkdirs();
-        getLog().debug("Version java package dir: " + javaPackageDir);
         
-        File javaClassFile = new File(javaPackageDir, this.className + ".java");
-        getLog().info("Version generating version java source: " + javaClassFile);
+        File outputFile;
+        
+        if (classMode) {
+            File classPackageDir = new File(classOutputDirectory, javaPackagePath);
+            classPackageDir.mkdirs();
+            getLog().debug("Version class package dir: " + classPackageDir);
+            
+            outputFile = new File(classPackageDir, this.className + ".class");
+        } else {
+            if (!outputDirectory.exists()) {
+                getLog().info("Version creating generated source directory: " + outputDirectory);
+                outputDirectory.mkdirs();
+            }
 
-        long ts = staticMillis;
+            // add the output directory to sources that will be compiled
+            this.project.addCompileSourceRoot(outputDirectory.getAbsolutePath());
+            getLog().info("Version generated source directory: " + outputDirectory + " added to project" );
+            
+            File javaPackageDir = new File(outputDirectory, javaPackagePath);
+            javaPackageDir.mkdirs();
+            getLog().debug("Version java package dir: " + javaPackageDir);
+
+            outputFile = new File(javaPackageDir, this.className + ".java");
+        }
+
+        BuildInfo buildInfo = BuildInfo.of(this.session);
+        
+        if (this.detectCommit && (this.versionCommit == null || this.versionCommit.equals("") || this.versionCommit.equals("unknown"))) {
+            this.versionCommit = detectGitCommit(buildInfo);
+        }
+
+        // build timestamp is shared by all modules in the reactor
+        long ts = buildInfo.getTimestampMillis();
+        Long reproducibleMillis = parseOutputTimestamp(this.outputTimestamp);
         if (this.versionTimestampMillis != null) {
             ts = this.versionTimestampMillis;
+        } else if (reproducibleMillis != null) {
+            ts = reproducibleMillis;
         }
 
-        Date defaultTimestamp = new Date(ts);
-        String defaultTimestampStr = defaultDateFormat.format(defaultTimestamp);
+        String defaultTimestampStr = buildInfo.formatTimestamp(ts);
         if (this.versionTimestamp != null && !this.versionTimestamp.equals("")) {
             defaultTimestampStr = this.versionTimestamp;
         }
 
-        String longVersion = this.versionVersion + " (commit " + this.versionCommit + " @ " + defaultTimestampStr + ")";
+        // everything that affects the generated output
+        Properties inputs = new Properties();
+        inputs.setProperty("format", STATE_FORMAT);
+        inputs.setProperty("mode", classMode ? "class" : "source");
+        inputs.setProperty("javaPackage", this.javaPackage);
+        inputs.setProperty("className", this.className);
+        inputs.setProperty("commit", String.valueOf(this.versionCommit));
+        inputs.setProperty("timestamp", defaultTimestampStr);
+        inputs.setProperty("version", String.valueOf(this.versionVersion));
+        inputs.setProperty("name", String.valueOf(this.versionName));
+        inputs.setProperty("vendor", String.valueOf(this.versionVendor));
+
+        File stateFile = new File(this.stateDirectory, this.javaPackage + "." + this.className + ".properties");
+        
+        if (this.incremental && isUpToDate(stateFile, inputs, outputFile)) {
+            getLog().info("Version " + (classMode ? "class" : "java source") + " is up-to-date: " + outputFile);
+            return;
+        }
+        
+        try {
+            if (classMode) {
+                getLog().info("Version generating version class: " + outputFile);
+                writeIfChanged(outputFile, buildClass(defaultTimestampStr));
+            } else {
+                getLog().info("Version generating version java source: " + outputFile);
+                writeIfChanged(outputFile, buildJavaSource(defaultTimestampStr).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        
+        if (this.incremental) {
+            saveState(stateFile, inputs, outputFile);
+        }
+    }
+    
+    private void writeIfChanged(File file, byte[] b) throws IOException {
+        if (this.incremental && file.isFile() && file.length() == b.length && Arrays.equals(b, Files.readAllBytes(file.toPath()))) {
+            getLog().info("Version unchanged (keeping existing file " + file.getName() + ")");
+            return;
+        }
+        
+        // write it out quick
+        Files.write(file.toPath(), b, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+    
+    private String detectGitCommit(BuildInfo buildInfo) throws MojoExecutionException {
+        long start = System.nanoTime();
+        GitMetadata git;
+        try {
+            git = buildInfo.getGitMetadata(this.project.getBasedir(), this.detectDirty);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read git metadata: " + e.getMessage(), e);
+        }
+        
+        if (git == null || git.getCommit() == null) {
+            getLog().warn("Version unable to detect commit (not a git repository or no commits yet)");
+            return "unknown";
+        }
+        
+        String commit = git.getCommit();
+        if (this.commitLength > 0 && this.commitLength < commit.length()) {
+            commit = commit.substring(0, this.commitLength);
+        }
+        if (Boolean.TRUE.equals(git.getDirty()) && this.dirtySuffix != null) {
+            commit += this.dirtySuffix;
+        }
+        
+        getLog().info("Version detected git commit " + commit + " from " + git.getGitDir()
+            + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        
+        return commit;
+    }
+    
+    private String buildLongVersion(String defaultTimestampStr) {
+        return this.versionVersion + " (commit " + this.versionCommit + " @ " + defaultTimestampStr + ")";
+    }
+    
+    private byte[] buildClass(String defaultTimestampStr) throws IOException {
+        return new VersionClassWriter(this.javaPackage, this.className)
+            .constant("COMMIT", this.versionCommit)
+            .constant("TIMESTAMP", defaultTimestampStr)
+            .constant("VERSION", this.versionVersion)
+            .constant("NAME", this.versionName)
+            .constant("VENDOR", this.versionVendor)
+            .constant("LONG_VERSION", buildLongVersion(defaultTimestampStr))
+            .getter("getCommit", "COMMIT")
+            .getter("getVendor", "VENDOR")
+            .getter("getTimestamp", "TIMESTAMP")
+            .getter("getName", "NAME")
+            .getter("getVersion", "VERSION")
+            .getter("getLongVersion", "LONG_VERSION")
+            .toByteArray();
+    }
+    
+    private String buildJavaSource(String defaultTimestampStr) {
+        String longVersion = buildLongVersion(defaultTimestampStr);
         StringBuilder sb = new StringBuilder();
         sb.append("/**\n");
         sb.append(" * DO NOT EDIT THIS FILE (auto generated by com.fizzed:version-maven-plugin)\n");
@@ -181,13 +404,68 @@ public class GenerateMojo extends AbstractMojo {
         sb.append("    /** Returns a longer library version that includes the timestamp such as \"").append(longVersion).append("\" */\n");
         sb.append("    static public String getLongVersion() { return LONG_VERSION; }\n");
         sb.append("}");
-
-        // write it out quick
+        return sb.toString();
+    }
+    
+    /**
+     * Parses a maven "project.build.outputTimestamp" value the same way maven
+     * archiver does: either seconds since the epoch or an ISO-8601 date time.
+     * Returns null if the value is missing or a placeholder (single char).
+     */
+    static Long parseOutputTimestamp(String value) throws MojoExecutionException {
+        if (value == null || value.trim().length() < 2) {
+            return null;
+        }
+        
+        String v = value.trim();
+        
+        if (v.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(v) * 1000L;
+        }
+        
         try {
-            byte[] b = sb.toString().getBytes(StandardCharsets.UTF_8);
-            Files.write(javaClassFile.toPath(), b, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            return OffsetDateTime.parse(v, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new MojoExecutionException("Invalid project.build.outputTimestamp value '" + v + "'", e);
+        }
+    }
+    
+    private boolean isUpToDate(File stateFile, Properties inputs, File outputFile) {
+        if (!stateFile.isFile()) {
+            return false;
+        }
+        
+        Properties state = new Properties();
+        try (InputStream input = Files.newInputStream(stateFile.toPath())) {
+            state.load(input);
         } catch (IOException e) {
-            throw new MojoExecutionException(e.getMessage(), e);
+            getLog().debug("Unable to read state file " + stateFile, e);
+            return false;
+        }
+        
+        // output must still be exactly what we wrote last time
+        if (!outputFile.isFile()
+                || !String.valueOf(outputFile.length()).equals(state.remove("length:" + outputFile.getAbsolutePath()))
+                || !String.valueOf(outputFile.lastModified()).equals(state.remove("lastModified:" + outputFile.getAbsolutePath()))) {
+            return false;
+        }
+        
+        return state.equals(inputs);
+    }
+    
+    private void saveState(File stateFile, Properties inputs, File outputFile) throws MojoExecutionException {
+        Properties state = new Properties();
+        state.putAll(inputs);
+        state.setProperty("length:" + outputFile.getAbsolutePath(), String.valueOf(outputFile.length()));
+        state.setProperty("lastModified:" + outputFile.getAbsolutePath(), String.valueOf(outputFile.lastModified()));
+        
+        try {
+            Files.createDirectories(stateFile.getParentFile().toPath());
+            try (OutputStream output = Files.newOutputStream(stateFile.toPath())) {
+                state.store(output, "version-maven-plugin state (do not edit)");
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write state file " + stateFile, e);
         }
     }
     
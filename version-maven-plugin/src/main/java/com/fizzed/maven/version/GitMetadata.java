@@ -0,0 +1,315 @@
+package com.fizzed.maven.version;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads git metadata (current commit and optionally whether the working tree
+ * is dirty) directly from the .git directory without forking a git process
+ * or loading a git library. Supports HEAD (symbolic or detached), loose refs,
+ * packed-refs and linked worktrees / submodules (a .git file pointing to the
+ * real git directory via "gitdir:").
+ *
+ * The dirty check compares the size and mtime of every file tracked in the
+ * index with the working tree (like "git status" does before it looks at any
+ * content). Untracked files are not considered and a file that was touched but
+ * not changed is reported as dirty.
+ */
+class GitMetadata {
+
+    static private final int MAX_SYMREF_DEPTH = 5;
+
+    private final Path workTree;
+    private final Path gitDir;
+    private final Path commonDir;
+    private final String commit;
+    private final String branch;
+    private final Boolean dirty;
+
+    private GitMetadata(Path workTree, Path gitDir, Path commonDir, String commit, String branch, Boolean dirty) {
+        this.workTree = workTree;
+        this.gitDir = gitDir;
+        this.commonDir = commonDir;
+        this.commit = commit;
+        this.branch = branch;
+        this.dirty = dirty;
+    }
+
+    public Path getWorkTree() {
+        return workTree;
+    }
+
+    public Path getGitDir() {
+        return gitDir;
+    }
+
+    public Path getCommonDir() {
+        return commonDir;
+    }
+
+    /**
+     * Full commit hash of HEAD or null if HEAD points to an unborn branch.
+     */
+    public String getCommit() {
+        return commit;
+    }
+
+    /**
+     * Branch name HEAD points to or null if detached.
+     */
+    public String getBranch() {
+        return branch;
+    }
+
+    /**
+     * Whether the working tree is dirty or null if it was not checked.
+     */
+    public Boolean getDirty() {
+        return dirty;
+    }
+
+    /**
+     * Finds the .git directory of the work tree containing the directory and
+     * returns it (or null if the directory is not within a git work tree).
+     */
+    static public Path findGitDir(File dir) throws IOException {
+        Path d = dir.toPath().toAbsolutePath().normalize();
+        while (d != null) {
+            Path dotGit = d.resolve(".git");
+            if (Files.isDirectory(dotGit)) {
+                return dotGit;
+            }
+            if (Files.isRegularFile(dotGit)) {
+                // linked worktree or submodule
+                String content = readFirstLine(dotGit);
+                if (content == null || !content.startsWith("gitdir:")) {
+                    throw new IOException("Invalid .git file " + dotGit + " (expected 'gitdir: <path>')");
+                }
+                return d.resolve(content.substring("gitdir:".length()).trim()).normalize();
+            }
+            d = d.getParent();
+        }
+        return null;
+    }
+
+    /**
+     * Reads the metadata of the git work tree containing the directory or
+     * returns null if the directory is not within a git work tree.
+     */
+    static public GitMetadata read(File dir, boolean checkDirty) throws IOException {
+        Path gitDir = findGitDir(dir);
+        if (gitDir == null) {
+            return null;
+        }
+
+        return read(gitDir, workTreeOf(dir, gitDir), checkDirty);
+    }
+
+    static GitMetadata read(Path gitDir, Path workTree, boolean checkDirty) throws IOException {
+        // linked worktrees share refs with the main repository
+        Path commonDir = gitDir;
+        Path commonDirFile = gitDir.resolve("commondir");
+        if (Files.isRegularFile(commonDirFile)) {
+            commonDir = gitDir.resolve(readFirstLine(commonDirFile)).normalize();
+        }
+
+        String head = readFirstLine(gitDir.resolve("HEAD"));
+        if (head == null) {
+            throw new IOException("Missing or empty HEAD in " + gitDir);
+        }
+
+        String commit;
+        String branch = null;
+        if (head.startsWith("ref:")) {
+            String ref = head.substring("ref:".length()).trim();
+            if (ref.startsWith("refs/heads/")) {
+                branch = ref.substring("refs/heads/".length());
+            }
+            commit = resolveRef(gitDir, commonDir, ref, 0);
+        } else {
+            commit = head;
+        }
+
+        Boolean dirty = null;
+        if (checkDirty) {
+            dirty = isDirty(gitDir.resolve("index"), workTree);
+        }
+
+        return new GitMetadata(workTree, gitDir, commonDir, commit, branch, dirty);
+    }
+
+    static private Path workTreeOf(File dir, Path gitDir) throws IOException {
+        // the work tree is the directory that contains the .git dir/file
+        Path d = dir.toPath().toAbsolutePath().normalize();
+        while (d != null) {
+            if (Files.exists(d.resolve(".git"), LinkOption.NOFOLLOW_LINKS)) {
+                return d;
+            }
+            d = d.getParent();
+        }
+        throw new IOException("Unable to find work tree of " + gitDir);
+    }
+
+    static private String resolveRef(Path gitDir, Path commonDir, String ref, int depth) throws IOException {
+        if (depth > MAX_SYMREF_DEPTH) {
+            throw new IOException("Too many levels of symbolic refs for " + ref);
+        }
+
+        // loose ref (per-worktree refs live in the git dir, all others in the common dir)
+        String value = readFirstLine(gitDir.resolve(ref));
+        if (value == null && !commonDir.equals(gitDir)) {
+            value = readFirstLine(commonDir.resolve(ref));
+        }
+
+        if (value != null) {
+            if (value.startsWith("ref:")) {
+                return resolveRef(gitDir, commonDir, value.substring("ref:".length()).trim(), depth+1);
+            }
+            return value;
+        }
+
+        // packed ref
+        Path packedRefs = commonDir.resolve("packed-refs");
+        if (Files.isRegularFile(packedRefs)) {
+            List<String> lines = Files.readAllLines(packedRefs, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                // skip comments & peeled tags
+                if (line.isEmpty() || line.charAt(0) == '#' || line.charAt(0) == '^') {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                if (space > 0 && line.regionMatches(space+1, ref, 0, ref.length()) && line.length() == space+1+ref.length()) {
+                    return line.substring(0, space);
+                }
+            }
+        }
+
+        // unborn branch
+        return null;
+    }
+
+    /**
+     * Compares the stat info recorded in the index (format version 2, 3 or 4)
+     * with the work tree. Returns as soon as any difference is found.
+     */
+    static boolean isDirty(Path indexFile, Path workTree) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(indexFile);
+        } catch (NoSuchFileException e) {
+            // nothing was ever added
+            return false;
+        }
+
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        if (bytes.length < 12 || buf.getInt(0) != 0x44495243) {     // "DIRC"
+            throw new IOException("Invalid index file " + indexFile);
+        }
+
+        int version = buf.getInt(4);
+        if (version < 2 || version > 4) {
+            throw new IOException("Unsupported index version " + version + " in " + indexFile);
+        }
+
+        int count = buf.getInt(8);
+        int pos = 12;
+        byte[] path = new byte[0];
+
+        for (int i = 0; i < count; i++) {
+            int entryStart = pos;
+            long mtimeSeconds = buf.getInt(pos + 8) & 0xFFFFFFFFL;
+            int mode = buf.getInt(pos + 24);
+            long size = buf.getInt(pos + 36) & 0xFFFFFFFFL;
+            int flags = buf.getShort(pos + 60) & 0xFFFF;
+            int extendedFlags = 0;
+            pos += 62;
+            if (version >= 3 && (flags & 0x4000) != 0) {
+                extendedFlags = buf.getShort(pos) & 0xFFFF;
+                pos += 2;
+            }
+
+            if (version == 4) {
+                // path is prefix compressed against the previous entry
+                int c = bytes[pos++] & 0xFF;
+                int strip = c & 0x7F;
+                while ((c & 0x80) != 0) {
+                    c = bytes[pos++] & 0xFF;
+                    strip = ((strip + 1) << 7) | (c & 0x7F);
+                }
+                int end = pos;
+                while (bytes[end] != 0) {
+                    end++;
+                }
+                int keep = path.length - strip;
+                byte[] newPath = new byte[keep + (end - pos)];
+                System.arraycopy(path, 0, newPath, 0, keep);
+                System.arraycopy(bytes, pos, newPath, keep, end - pos);
+                path = newPath;
+                pos = end + 1;
+            } else {
+                int end = pos;
+                while (bytes[end] != 0) {
+                    end++;
+                }
+                path = new byte[end - pos];
+                System.arraycopy(bytes, pos, path, 0, path.length);
+                // entries are NUL padded to a multiple of 8 bytes
+                pos = entryStart + ((end - entryStart + 8) & ~7);
+            }
+
+            int stage = (flags >> 12) & 0x3;
+            boolean assumeValid = (flags & 0x8000) != 0;
+            boolean skipWorktree = (extendedFlags & 0x4000) != 0;
+            boolean intentToAdd = (extendedFlags & 0x2000) != 0;
+            int objectType = (mode >>> 12) & 0xF;
+
+            if (stage != 0 || intentToAdd) {
+                // merge conflict or a file that was never committed
+                return true;
+            }
+
+            if (assumeValid || skipWorktree || objectType == 0xE) {
+                // ignore sparse/assumed unchanged entries and submodules
+                continue;
+            }
+
+            Path file = workTree.resolve(new String(path, StandardCharsets.UTF_8));
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException e) {
+                return true;
+            }
+
+            if ((attrs.size() & 0xFFFFFFFFL) != size
+                    || (attrs.lastModifiedTime().to(TimeUnit.SECONDS) & 0xFFFFFFFFL) != mtimeSeconds) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    static private String readFirstLine(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        int eol = content.indexOf('\n');
+        if (eol >= 0) {
+            content = content.substring(0, eol);
+        }
+        content = content.trim();
+        return content.isEmpty() ? null : content;
+    }
+
+}
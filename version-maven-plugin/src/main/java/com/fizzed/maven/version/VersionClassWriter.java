@@ -0,0 +1,219 @@
+package com.fizzed.maven.version;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the bytecode of a Version class directly (no javac required). The
+ * class is equivalent to the one compiled from the generated Java source: a
+ * public final class with private static final String constants and a public
+ * static getter for each of them.
+ */
+class VersionClassWriter {
+
+    // java 8 class file format
+    static private final int MAJOR_VERSION = 52;
+
+    static private final int ACC_PUBLIC = 0x0001;
+    static private final int ACC_PRIVATE = 0x0002;
+    static private final int ACC_STATIC = 0x0008;
+    static private final int ACC_FINAL = 0x0010;
+    static private final int ACC_SUPER = 0x0020;
+
+    static private final int CONSTANT_UTF8 = 1;
+    static private final int CONSTANT_CLASS = 7;
+    static private final int CONSTANT_STRING = 8;
+    static private final int CONSTANT_METHODREF = 10;
+    static private final int CONSTANT_NAME_AND_TYPE = 12;
+
+    static private final String STRING_DESCRIPTOR = "Ljava/lang/String;";
+
+    private final String internalName;
+    private final String sourceFile;
+    // constant name -> value (in order)
+    private final Map<String,String> constants;
+    // getter name -> constant name (in order)
+    private final Map<String,String> getters;
+
+    // constant pool
+    private final ByteArrayOutputStream poolBytes;
+    private final DataOutputStream pool;
+    private final Map<String,Integer> poolIndexes;
+    private int poolCount;
+
+    public VersionClassWriter(String javaPackage, String className) {
+        this.internalName = (javaPackage == null || javaPackage.isEmpty() ? "" : javaPackage.replace('.', '/') + "/") + className;
+        this.sourceFile = className + ".java";
+        this.constants = new LinkedHashMap<>();
+        this.getters = new LinkedHashMap<>();
+        this.poolBytes = new ByteArrayOutputStream();
+        this.pool = new DataOutputStream(this.poolBytes);
+        this.poolIndexes = new HashMap<>();
+        this.poolCount = 1;
+    }
+
+    public VersionClassWriter constant(String name, String value) {
+        this.constants.put(name, value);
+        return this;
+    }
+
+    public VersionClassWriter getter(String methodName, String constantName) {
+        if (!this.constants.containsKey(constantName)) {
+            throw new IllegalArgumentException("Constant " + constantName + " not defined");
+        }
+        this.getters.put(methodName, constantName);
+        return this;
+    }
+
+    public byte[] toByteArray() throws IOException {
+        // resolve everything into the constant pool first
+        int thisClass = classRef(this.internalName);
+        int superClass = classRef("java/lang/Object");
+        int objectInit = methodRef("java/lang/Object", "<init>", "()V");
+        int initName = utf8("<init>");
+        int initDescriptor = utf8("()V");
+        int getterDescriptor = utf8("()" + STRING_DESCRIPTOR);
+        int stringDescriptor = utf8(STRING_DESCRIPTOR);
+        int codeAttribute = utf8("Code");
+        int constantValueAttribute = utf8("ConstantValue");
+        int sourceFileAttribute = utf8("SourceFile");
+        int sourceFileName = utf8(this.sourceFile);
+
+        List<int[]> fields = new ArrayList<>();
+        for (Map.Entry<String,String> constant : this.constants.entrySet()) {
+            fields.add(new int[] { utf8(constant.getKey()), string(constant.getValue()) });
+        }
+
+        List<int[]> methods = new ArrayList<>();
+        for (Map.Entry<String,String> getter : this.getters.entrySet()) {
+            methods.add(new int[] { utf8(getter.getKey()), string(this.constants.get(getter.getValue())) });
+        }
+
+        this.pool.flush();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(MAJOR_VERSION);
+        out.writeShort(this.poolCount);
+        this.poolBytes.writeTo(out);
+        out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0);      // interfaces
+
+        out.writeShort(fields.size());
+        for (int[] field : fields) {
+            out.writeShort(ACC_PRIVATE | ACC_STATIC | ACC_FINAL);
+            out.writeShort(field[0]);
+            out.writeShort(stringDescriptor);
+            out.writeShort(1);
+            out.writeShort(constantValueAttribute);
+            out.writeInt(2);
+            out.writeShort(field[1]);
+        }
+
+        out.writeShort(1 + methods.size());
+
+        // default constructor: aload_0, invokespecial Object.<init>, return
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(initName);
+        out.writeShort(initDescriptor);
+        writeCode(out, codeAttribute, 1, 1, new byte[] {
+            0x2A, (byte)0xB7, (byte)(objectInit >> 8), (byte)objectInit, (byte)0xB1 });
+
+        // getters: ldc_w constant, areturn
+        for (int[] method : methods) {
+            out.writeShort(ACC_PUBLIC | ACC_STATIC);
+            out.writeShort(method[0]);
+            out.writeShort(getterDescriptor);
+            writeCode(out, codeAttribute, 1, 0, new byte[] {
+                0x13, (byte)(method[1] >> 8), (byte)method[1], (byte)0xB0 });
+        }
+
+        out.writeShort(1);
+        out.writeShort(sourceFileAttribute);
+        out.writeInt(2);
+        out.writeShort(sourceFileName);
+
+        out.flush();
+        return baos.toByteArray();
+    }
+
+    private void writeCode(DataOutputStream out, int codeAttribute, int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);      // exception table
+        out.writeShort(0);      // attributes
+    }
+
+    private int utf8(String value) throws IOException {
+        Integer index = this.poolIndexes.get("U" + value);
+        if (index == null) {
+            this.pool.writeByte(CONSTANT_UTF8);
+            // writeUTF uses the same "modified utf-8" as the class file format
+            this.pool.writeUTF(value);
+            index = add("U" + value);
+        }
+        return index;
+    }
+
+    private int string(String value) throws IOException {
+        Integer index = this.poolIndexes.get("S" + value);
+        if (index == null) {
+            int utf8 = utf8(value);
+            this.pool.writeByte(CONSTANT_STRING);
+            this.pool.writeShort(utf8);
+            index = add("S" + value);
+        }
+        return index;
+    }
+
+    private int classRef(String name) throws IOException {
+        Integer index = this.poolIndexes.get("C" + name);
+        if (index == null) {
+            int utf8 = utf8(name);
+            this.pool.writeByte(CONSTANT_CLASS);
+            this.pool.writeShort(utf8);
+            index = add("C" + name);
+        }
+        return index;
+    }
+
+    private int methodRef(String owner, String name, String descriptor) throws IOException {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        this.pool.writeByte(CONSTANT_NAME_AND_TYPE);
+        this.pool.writeShort(nameIndex);
+        this.pool.writeShort(descriptorIndex);
+        int nameAndType = add("N" + name + descriptor);
+        this.pool.writeByte(CONSTANT_METHODREF);
+        this.pool.writeShort(ownerIndex);
+        this.pool.writeShort(nameAndType);
+        return add("M" + owner + "." + name + descriptor);
+    }
+
+    private int add(String key) {
+        int index = this.poolCount++;
+        if (index > 0xFFFF) {
+            throw new IllegalStateException("Too many constants in class " + this.internalName);
+        }
+        this.poolIndexes.put(key, index);
+        return index;
+    }
+
+}